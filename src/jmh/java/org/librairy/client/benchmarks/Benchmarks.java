@@ -0,0 +1,49 @@
+package org.librairy.client.benchmarks;
+
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.librairy.client.services.FileService;
+import org.librairy.client.topics.LDACmdOption;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Helpers shared by the benchmarks
+ */
+public class Benchmarks {
+
+    public static LDACmdOption options(String... args) throws CmdLineException {
+        LDACmdOption option = new LDACmdOption();
+        new CmdLineParser(option).parseArgument(args);
+        return option;
+    }
+
+    public static File createDirectory() throws IOException {
+        return Files.createTempDirectory("lda-benchmark").toFile();
+    }
+
+    /**
+     * Write documents in the dataset format
+     */
+    public static void write(List<String> documents, File file) throws IOException {
+        try (BufferedWriter writer = FileService.writer(file.getAbsolutePath())){
+            for (String document : documents){
+                writer.write(document + "\n");
+            }
+        }
+    }
+
+    public static void delete(File file){
+        File[] children = file.listFiles();
+        if (children != null){
+            for (File child : children){
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
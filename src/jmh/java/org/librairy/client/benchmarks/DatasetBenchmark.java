@@ -0,0 +1,55 @@
+package org.librairy.client.benchmarks;
+
+import org.librairy.client.topics.LDADataset;
+import org.librairy.client.topics.SyntheticCorpus;
+import org.librairy.client.topics.VocabularyPruner;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Documents read per second from a compressed dataset file, by number of tokenizing threads and with or without
+ * vocabulary pruning
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DatasetBenchmark {
+
+    private static final int DOCUMENTS  = 20000;
+    private static final int LENGTH     = 100;
+    private static final int WORDS      = 50000;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"false", "true"})
+    public boolean pruning;
+
+    private File dir;
+    private String path;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = Benchmarks.createDirectory();
+        File file = new File(dir, "corpus.gz");
+        new SyntheticCorpus(DOCUMENTS, WORDS, 100, LENGTH, 1).write(file);
+        path = file.getAbsolutePath();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        Benchmarks.delete(dir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public LDADataset read() throws Exception {
+        LDADataset data = new LDADataset();
+        data.numThreads = threads;
+        if (pruning) data.pruner = new VocabularyPruner(5, 0.5, 10000);
+        data.readDataSet(path, true);
+        return data;
+    }
+}
@@ -0,0 +1,82 @@
+package org.librairy.client.benchmarks;
+
+import org.librairy.client.topics.Dictionary;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups per second in a dictionary, by vocabulary size
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DictionaryBenchmark {
+
+    // lookups of each invocation
+    private static final int LOOKUPS = 1024;
+
+    @Param({"10000", "1000000"})
+    public int words;
+
+    private Dictionary dictionary;
+    private String[] present;
+    private String[] absent;
+    private byte[][] bytes;
+    private int[] ids;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        dictionary = new Dictionary();
+        for (int w = 0; w < words; w++){
+            dictionary.addWord("word" + w);
+        }
+
+        SplittableRandom random = new SplittableRandom(1);
+        present = new String[LOOKUPS];
+        absent = new String[LOOKUPS];
+        bytes = new byte[LOOKUPS][];
+        ids = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++){
+            ids[i] = random.nextInt(words);
+            present[i] = "word" + ids[i];
+            absent[i] = "other" + random.nextInt(words);
+            bytes[i] = present[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void getID(Blackhole blackhole){
+        for (String word : present){
+            blackhole.consume(dictionary.getID(word));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void getIDAbsent(Blackhole blackhole){
+        for (String word : absent){
+            blackhole.consume(dictionary.getID(word));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void getIDBytes(Blackhole blackhole){
+        for (byte[] word : bytes){
+            blackhole.consume(dictionary.getID(word, 0, word.length));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void getWord(Blackhole blackhole){
+        for (int id : ids){
+            blackhole.consume(dictionary.getWord(id));
+        }
+    }
+}
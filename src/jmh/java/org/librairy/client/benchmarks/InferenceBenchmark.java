@@ -0,0 +1,89 @@
+package org.librairy.client.benchmarks;
+
+import org.librairy.client.topics.Estimator;
+import org.librairy.client.topics.InferenceEngine;
+import org.librairy.client.topics.Inferencer;
+import org.librairy.client.topics.LDACmdOption;
+import org.librairy.client.topics.Model;
+import org.librairy.client.topics.SyntheticCorpus;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of inference with a trained model: a file of new documents with the inferencer, and a single document with
+ * the in-memory engine, by inference mode
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InferenceBenchmark {
+
+    private static final int DOCUMENTS  = 100;
+    private static final int LENGTH     = 100;
+    private static final int WORDS      = 5000;
+    private static final int TOPICS     = 50;
+
+    @Param({"gibbs", "separately", "foldin"})
+    public String mode;
+
+    private File dir;
+    private LDACmdOption option;
+    private Model trnModel;
+    private InferenceEngine engine;
+    private List<String> texts;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = Benchmarks.createDirectory();
+
+        // documents to infer are not in the training corpus
+        List<String> documents = new SyntheticCorpus(2000 + DOCUMENTS, WORDS, TOPICS, LENGTH, 1).texts();
+        texts = documents.subList(2000, documents.size());
+        Benchmarks.write(documents.subList(0, 2000), new File(dir, "corpus.gz"));
+        Benchmarks.write(texts, new File(dir, "infer.gz"));
+        new Estimator(Benchmarks.options("-est", "-dir", dir.getAbsolutePath(), "-dfile", "corpus.gz",
+                "-model", "model", "-ntopics", String.valueOf(TOPICS), "-alpha", "0.1", "-beta", "0.01",
+                "-niters", "50", "-seed", "1")).estimate();
+
+        String[] args = {"-inf", "-dir", dir.getAbsolutePath(), "-dfile", "infer.gz", "-model", "model",
+                "-niters", "20", "-seed", "1"};
+        if (mode.equals("separately")) args = append(args, "-infseparately");
+        if (mode.equals("foldin")) args = append(args, "-foldin", "gibbs");
+        option = Benchmarks.options(args);
+
+        trnModel = new Inferencer(option).trnModel;
+        engine = new InferenceEngine(trnModel, option);
+    }
+
+    private static String[] append(String[] args, String... more){
+        String[] all = new String[args.length + more.length];
+        System.arraycopy(args, 0, all, 0, args.length);
+        System.arraycopy(more, 0, all, args.length, more.length);
+        return all;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        Benchmarks.delete(dir);
+    }
+
+    /**
+     * All documents of the file, including reading them and saving the outputs
+     */
+    @Benchmark
+    public Model file() throws Exception {
+        return new Inferencer(option, trnModel).inference();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double[] document(){
+        next = (next + 1) % texts.size();
+        return engine.inference(texts.get(next));
+    }
+}
@@ -0,0 +1,57 @@
+package org.librairy.client.benchmarks;
+
+import org.librairy.client.topics.Estimator;
+import org.librairy.client.topics.Inferencer;
+import org.librairy.client.topics.Model;
+import org.librairy.client.topics.SyntheticCorpus;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to save a trained model and to load it back for inference, by model format
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ModelIOBenchmark {
+
+    private static final int DOCUMENTS  = 5000;
+    private static final int LENGTH     = 100;
+    private static final int WORDS      = 20000;
+    private static final int TOPICS     = 100;
+
+    @Param({"text", "binary"})
+    public String format;
+
+    private File dir;
+    private Model model;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = Benchmarks.createDirectory();
+        new SyntheticCorpus(DOCUMENTS, WORDS, TOPICS, LENGTH, 1).write(new File(dir, "corpus.gz"));
+
+        Estimator estimator = new Estimator(Benchmarks.options("-est", "-dir", dir.getAbsolutePath(),
+                "-dfile", "corpus.gz", "-model", "model", "-ntopics", String.valueOf(TOPICS), "-alpha", "0.1",
+                "-beta", "0.01", "-niters", "5", "-seed", "1", "-modelformat", format));
+        estimator.estimate();
+        model = estimator.getTrnModel();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        Benchmarks.delete(dir);
+    }
+
+    @Benchmark
+    public boolean save(){
+        return model.saveModel();
+    }
+
+    @Benchmark
+    public Model load() throws Exception {
+        return new Inferencer(Benchmarks.options("-inf", "-dir", dir.getAbsolutePath(), "-model", "model")).trnModel;
+    }
+}
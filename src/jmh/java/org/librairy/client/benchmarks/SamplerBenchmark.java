@@ -0,0 +1,60 @@
+package org.librairy.client.benchmarks;
+
+import org.librairy.client.topics.Estimator;
+import org.librairy.client.topics.Model;
+import org.librairy.client.topics.SyntheticCorpus;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokens sampled per second by a Gibbs sweep of the estimator, by number of topics and sampling engine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SamplerBenchmark {
+
+    private static final int DOCUMENTS  = 1000;
+    private static final int LENGTH     = 100;
+    private static final int WORDS      = 5000;
+
+    @Param({"10", "100", "500"})
+    public int topics;
+
+    @Param({"dense", "sparse", "alias"})
+    public String sampler;
+
+    private File dir;
+    private Estimator estimator;
+    private Model model;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = Benchmarks.createDirectory();
+        new SyntheticCorpus(DOCUMENTS, WORDS, 50, LENGTH, 1).write(new File(dir, "corpus.gz"));
+
+        estimator = new Estimator(Benchmarks.options("-est", "-dir", dir.getAbsolutePath(), "-dfile", "corpus.gz",
+                "-model", "model", "-ntopics", String.valueOf(topics), "-alpha", "0.1", "-beta", "0.01",
+                "-niters", "1", "-sampler", sampler, "-seed", "1"));
+        model = estimator.getTrnModel();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        Benchmarks.delete(dir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS * LENGTH)
+    public int[] sweep(){
+        for (int m = 0; m < model.M; m++){
+            int offset = model.data.offsets[m];
+            for (int n = 0; n < model.data.length(m); n++){
+                model.z[offset + n] = estimator.sampling(m, n);
+            }
+        }
+        return model.z;
+    }
+}
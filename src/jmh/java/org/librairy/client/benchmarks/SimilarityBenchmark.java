@@ -0,0 +1,61 @@
+package org.librairy.client.benchmarks;
+
+import org.librairy.client.model.DataShape;
+import org.librairy.metrics.similarity.JensenShannonSimilarity;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to compare all pairs of document vectors with the Jensen-Shannon similarity, as the document similarities of a
+ * domain do, by number of documents
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SimilarityBenchmark {
+
+    private static final int TOPICS = 100;
+
+    @Param({"100", "1000"})
+    public int documents;
+
+    private List<DataShape> shapes;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        SplittableRandom random = new SplittableRandom(1);
+        shapes = new ArrayList<>(documents);
+        for (int d = 0; d < documents; d++){
+            List<Double> vector = new ArrayList<>(TOPICS);
+            double sum = 0.0;
+            for (int k = 0; k < TOPICS; k++){
+                double value = -Math.log(random.nextDouble());
+                vector.add(value);
+                sum += value;
+            }
+            for (int k = 0; k < TOPICS; k++){
+                vector.set(k, vector.get(k) / sum);
+            }
+
+            DataShape shape = new DataShape();
+            shape.setUri("http://librairy.org/items/" + d);
+            shape.setVector(vector);
+            shapes.add(shape);
+        }
+    }
+
+    @Benchmark
+    public void allPairs(Blackhole blackhole){
+        for (DataShape s1 : shapes){
+            for (DataShape s2 : shapes){
+                if (s1.getUri().equalsIgnoreCase(s2.getUri())) continue;
+                blackhole.consume(JensenShannonSimilarity.apply(s1.getVectorArray(), s2.getVectorArray()));
+            }
+        }
+    }
+}
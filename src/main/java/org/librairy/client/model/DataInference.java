@@ -0,0 +1,18 @@
+package org.librairy.client.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Topic distribution inferred for a document, with its most likely words if requested
+ */
+@Data
+public class DataInference {
+
+    List<Double> vector = new ArrayList<>();
+
+    List<Word> words = new ArrayList<>();
+
+}
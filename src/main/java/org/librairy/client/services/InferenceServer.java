@@ -0,0 +1,302 @@
+package org.librairy.client.services;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.librairy.client.topics.InferenceEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded HTTP server inferring topic distributions with a model kept in memory.
+ *
+ * POST /inference takes documents in the dataset format, one per line, and answers their topic distributions, one per
+ * line in the format of the inferred documents file. Documents of concurrent requests are queued and grouped into
+ * batches of at most a maximum size, waiting at most a maximum time for a batch to fill, and every batch is sampled
+ * as a unit (see InferenceEngine.inference(int[][])) by one of a pool of workers. GET /stats reports the queue depth,
+ * the batches and the latency percentiles.
+ */
+public class InferenceServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InferenceServer.class);
+
+    // latencies kept for the percentiles
+    private static final int LATENCY_WINDOW = 4096;
+
+    private static class Request {
+        final String text;
+        final long enqueued = System.nanoTime();
+        final CompletableFuture<double[]> theta = new CompletableFuture<>();
+
+        Request(String text){
+            this.text = text;
+        }
+    }
+
+    private final InferenceEngine engine;
+    private final int port;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final int workers;
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Semaphore idleWorkers;
+    private ExecutorService workerPool;
+    private ExecutorService handlers;
+    private Thread batcher;
+    private HttpServer server;
+    private volatile boolean running = false;
+
+    private final AtomicLong documents  = new AtomicLong();
+    private final AtomicLong batches    = new AtomicLong();
+
+    // circular window of latencies in nanoseconds, guarded by itself
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private long numLatencies = 0;
+
+    public InferenceServer(InferenceEngine engine, int port, int maxBatchSize, long maxWaitMillis, int workers){
+        this.engine         = engine;
+        this.port           = port;
+        this.maxBatchSize   = Math.max(1, maxBatchSize);
+        this.maxWaitNanos   = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.workers        = Math.max(1, workers);
+        this.idleWorkers    = new Semaphore(this.workers);
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) return;
+
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/inference", this::inference);
+        server.createContext("/stats", this::stats);
+        handlers = Executors.newCachedThreadPool(daemon("lda-http"));
+        server.setExecutor(handlers);
+
+        workerPool = Executors.newFixedThreadPool(workers, daemon("lda-inference"));
+        running = true;
+        batcher = daemon("lda-batcher").newThread(this::batch);
+        batcher.start();
+
+        server.start();
+        LOG.info("Inference server listening on port " + getPort() + " (batches of " + maxBatchSize + ", " + workers + " workers)");
+    }
+
+    public synchronized void stop(){
+        if (!running) return;
+        running = false;
+
+        server.stop(0);
+        batcher.interrupt();
+        workerPool.shutdown();
+        handlers.shutdown();
+
+        Request request;
+        while ((request = queue.poll()) != null){
+            request.theta.completeExceptionally(new IllegalStateException("Inference server stopped"));
+        }
+        LOG.info("Inference server stopped");
+    }
+
+    public int getPort(){
+        return (server != null)? server.getAddress().getPort() : port;
+    }
+
+    private static ThreadFactory daemon(String name){
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Topic distribution of a document, waiting for its batch to be sampled
+     */
+    public synchronized CompletableFuture<double[]> submit(String text){
+        Request request = new Request(text);
+        if (!running){
+            request.theta.completeExceptionally(new IllegalStateException("Inference server not running"));
+        }
+        else {
+            queue.add(request);
+        }
+        return request.theta;
+    }
+
+    /**
+     * Group queued documents into batches while a worker is idle
+     */
+    private void batch(){
+        List<Request> batch = Collections.emptyList();
+        try {
+            while (running){
+                idleWorkers.acquire();
+
+                batch = new ArrayList<>(maxBatchSize);
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize){
+                    Request request = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (request == null) break;
+                    batch.add(request);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+
+                batches.incrementAndGet();
+                List<Request> requests = batch;
+                workerPool.execute(() -> {
+                    try {
+                        sample(requests);
+                    } finally {
+                        idleWorkers.release();
+                    }
+                });
+                batch = Collections.emptyList();
+            }
+        } catch (InterruptedException | RejectedExecutionException e) {
+            LOG.debug("Batcher stopped: " + e.getMessage());
+            for (Request request : batch){
+                request.theta.completeExceptionally(new IllegalStateException("Inference server stopped"));
+            }
+        }
+    }
+
+    /**
+     * Sample the documents of a batch together, every request is completed even if sampling fails
+     */
+    private void sample(List<Request> batch){
+        try {
+            List<Request> requests = new ArrayList<>(batch.size());
+            List<int[]> words = new ArrayList<>(batch.size());
+            for (Request request : batch){
+                try {
+                    words.add(engine.words(request.text));
+                    requests.add(request);
+                } catch (RuntimeException e) {
+                    request.theta.completeExceptionally(e);
+                }
+            }
+
+            double[][] thetas = engine.inference(words.toArray(new int[words.size()][]));
+            long now = System.nanoTime();
+            for (int i = 0; i < thetas.length; i++){
+                Request request = requests.get(i);
+                record(now - request.enqueued);
+                documents.incrementAndGet();
+                request.theta.complete(thetas[i]);
+            }
+        } catch (Throwable e) {
+            LOG.error("Error inferring topics of a batch", e);
+            for (Request request : batch){
+                request.theta.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void record(long latency){
+        synchronized (latencies){
+            latencies[(int) (numLatencies++ % LATENCY_WINDOW)] = latency;
+        }
+    }
+
+    /**
+     * Latency percentiles in milliseconds over the last documents
+     */
+    public double[] latencyPercentiles(double... percentiles){
+        long[] window;
+        synchronized (latencies){
+            window = Arrays.copyOf(latencies, (int) Math.min(numLatencies, LATENCY_WINDOW));
+        }
+        Arrays.sort(window);
+
+        double[] values = new double[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++){
+            if (window.length == 0) continue;
+            int rank = (int) Math.ceil(percentiles[i] / 100.0 * window.length) - 1;
+            values[i] = window[Math.max(0, Math.min(rank, window.length - 1))] / 1e6;
+        }
+        return values;
+    }
+
+    public int getQueueDepth(){
+        return queue.size();
+    }
+
+    public long getDocuments(){
+        return documents.get();
+    }
+
+    public long getBatches(){
+        return batches.get();
+    }
+
+    private void inference(HttpExchange exchange) throws IOException {
+        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())){
+            respond(exchange, 405, "Method not allowed\n");
+            return;
+        }
+
+        List<CompletableFuture<double[]>> results = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))){
+            String line;
+            while ((line = reader.readLine()) != null){
+                if (!line.trim().isEmpty()) results.add(submit(line));
+            }
+        }
+
+        StringBuilder response = new StringBuilder();
+        try {
+            for (CompletableFuture<double[]> result : results){
+                double[] theta = result.get();
+                for (int k = 0; k < theta.length; k++){
+                    response.append(k).append(":").append(theta[k]).append(" ");
+                }
+                response.append("\n");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "Interrupted\n");
+            return;
+        } catch (ExecutionException e) {
+            LOG.error("Error inferring topics", e.getCause());
+            respond(exchange, 500, "Error inferring topics: " + e.getCause().getMessage() + "\n");
+            return;
+        }
+        respond(exchange, 200, response.toString());
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        double[] percentiles = latencyPercentiles(50, 95, 99);
+        long numBatches = getBatches();
+        String response =
+                "queue " + getQueueDepth() + "\n" +
+                "documents " + getDocuments() + "\n" +
+                "batches " + numBatches + "\n" +
+                "batch_size " + ((numBatches > 0)? (double) getDocuments() / numBatches : 0.0) + "\n" +
+                "latency_p50_ms " + percentiles[0] + "\n" +
+                "latency_p95_ms " + percentiles[1] + "\n" +
+                "latency_p99_ms " + percentiles[2] + "\n";
+        respond(exchange, 200, response);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()){
+            out.write(bytes);
+        }
+    }
+}
@@ -14,9 +14,12 @@ import org.librairy.client.exceptions.ModelError;
 import org.librairy.client.exceptions.StorageError;
 import org.librairy.client.model.*;
 import org.librairy.client.topics.Estimator;
+import org.librairy.client.topics.InferenceEngine;
 import org.librairy.client.topics.Inferencer;
 import org.librairy.client.topics.LDACmdOption;
 import org.librairy.client.topics.Model;
+import org.librairy.client.topics.OnlineEstimator;
+import org.librairy.client.topics.TrainingListener;
 import org.librairy.metrics.data.Ranking;
 import org.librairy.metrics.distance.RankingSimilarityMetric;
 import org.librairy.metrics.similarity.JensenShannonSimilarity;
@@ -28,10 +31,12 @@ import java.net.URLEncoder;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -51,9 +56,21 @@ public class LibrairyService {
 
     private final RestService restService;
 
+    // trained models kept in memory for inference, 1GB by default
+    @Getter
+    private final ModelRegistry modelRegistry;
+
+    // progress of the models trained and of the inferences
+    private final List<TrainingListener> trainingListeners = new CopyOnWriteArrayList<>();
+
 
     public LibrairyService(RestService restService){
+        this(restService, 1024L * 1024 * 1024);
+    }
+
+    public LibrairyService(RestService restService, long modelCacheBytes){
         this.restService    = restService;
+        this.modelRegistry  = new ModelRegistry(modelCacheBytes, domainId -> inferenceEngine(domainId, Optional.empty()));
         this.domainsDao     = new DomainsDao(restService);
         this.itemsDao       = new ItemsDao(restService);
         this.partsDao       = new PartsDao(restService);
@@ -61,6 +78,17 @@ public class LibrairyService {
         domainsDao.setItemsDao(itemsDao);
     }
 
+    /**
+     * Notify the metrics of every iteration of the models trained and of the inferences from files
+     */
+    public void addTrainingListener(TrainingListener listener){
+        trainingListeners.add(listener);
+    }
+
+    public void removeTrainingListener(TrainingListener listener){
+        trainingListeners.remove(listener);
+    }
+
     public void addFolder(String folderPath, List<String> domains, Optional<Map<String,String>> parameters ) throws IOException {
         Instant startModel  = Instant.now();
         AtomicInteger counter = new AtomicInteger();
@@ -136,6 +164,31 @@ public class LibrairyService {
 
 
     public DataModel newModel(DataModel.ALGORITHM algorithm, String domain, Optional<List<String>> stopwords, Optional<Integer> iterations, Optional<Integer> numTopics, Optional<Double> alpha, Optional<Double> beta, Optional<Integer> wordsPerTopic, Optional<Integer> maxSize) throws ModelError {
+        return newModel(algorithm, domain, stopwords, iterations, numTopics, alpha, beta, wordsPerTopic, maxSize, Optional.empty());
+    }
+
+    public DataModel newModel(DataModel.ALGORITHM algorithm, String domain, Optional<List<String>> stopwords, Optional<Integer> iterations, Optional<Integer> numTopics, Optional<Double> alpha, Optional<Double> beta, Optional<Integer> wordsPerTopic, Optional<Integer> maxSize, Optional<Integer> numThreads) throws ModelError {
+        return newModel(algorithm, domain, stopwords, iterations, numTopics, alpha, beta, wordsPerTopic, maxSize, numThreads, Optional.empty(), Optional.empty(), Optional.empty());
+    }
+
+    /**
+     * Train a model of the domain with its vocabulary pruned by document frequency while the dataset is loaded
+     * @param minDf minimum number of documents of a word kept in the vocabulary
+     * @param maxDf maximum number of documents of a word kept in the vocabulary, as a fraction of the documents if not greater than 1
+     * @param maxVocab maximum number of words of the vocabulary, the most frequent in documents
+     */
+    public DataModel newModel(DataModel.ALGORITHM algorithm, String domain, Optional<List<String>> stopwords, Optional<Integer> iterations, Optional<Integer> numTopics, Optional<Double> alpha, Optional<Double> beta, Optional<Integer> wordsPerTopic, Optional<Integer> maxSize, Optional<Integer> numThreads, Optional<Integer> minDf, Optional<Double> maxDf, Optional<Integer> maxVocab) throws ModelError {
+        return newModel(algorithm, domain, stopwords, iterations, numTopics, alpha, beta, wordsPerTopic, maxSize, numThreads, minDf, maxDf, maxVocab, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+    }
+
+    /**
+     * Train a model of the domain that may stop before the maximum number of iterations. It only stops early when asked to.
+     * @param llInterval number of iterations between evaluations of the log-likelihood, each one a full pass over the counts
+     * @param convergence relative improvement of the log-likelihood below which an evaluation counts towards stopping
+     * @param patience number of consecutive evaluations below the convergence threshold before stopping, 3 by default
+     * @param maxMinutes minutes after which the estimation stops
+     */
+    public DataModel newModel(DataModel.ALGORITHM algorithm, String domain, Optional<List<String>> stopwords, Optional<Integer> iterations, Optional<Integer> numTopics, Optional<Double> alpha, Optional<Double> beta, Optional<Integer> wordsPerTopic, Optional<Integer> maxSize, Optional<Integer> numThreads, Optional<Integer> minDf, Optional<Double> maxDf, Optional<Integer> maxVocab, Optional<Integer> llInterval, Optional<Double> convergence, Optional<Integer> patience, Optional<Double> maxMinutes) throws ModelError {
 
         String domainId;
         try {
@@ -205,8 +258,9 @@ public class LibrairyService {
             Double betaValue    = beta.isPresent()? beta.get() : 0.01;
             Integer topicsValue = numTopics.isPresent()? numTopics.get() : Double.valueOf(2*Math.sqrt(counter.get()/2)).intValue();
             Integer wordsValue  = wordsPerTopic.isPresent()? wordsPerTopic.get() : 10;
+            Integer threadsValue= numThreads.isPresent()? numThreads.get() : 1;
 
-            LOG.info("Ready to train a " + algorithm + " model with " + topicsValue + " topics (alpha="+alphaValue+"/beta="+betaValue+") in " + iterationsValue + " iterations" );
+            LOG.info("Ready to train a " + algorithm + " model with " + topicsValue + " topics (alpha="+alphaValue+"/beta="+betaValue+") in " + iterationsValue + " iterations using " + threadsValue + " threads" );
             String[] args = new String[]{
                     "-est",
                     "-alpha",String.valueOf(alphaValue),
@@ -214,6 +268,8 @@ public class LibrairyService {
                     "-ntopics",String.valueOf(topicsValue),
                     "-niters",String.valueOf(iterationsValue),
                     "-twords",String.valueOf(wordsValue),
+                    "-nthreads",String.valueOf(threadsValue),
+                    "-modelformat",Model.BOTH,
                     "-dir",folder.getAbsolutePath(),
                     "-dfile",gzFile.getName(),
                     "-model","model"
@@ -223,8 +279,17 @@ public class LibrairyService {
             LDACmdOption option = new LDACmdOption();
             CmdLineParser parser = new CmdLineParser(option);
             parser.parseArgument(args);
+            if (minDf.isPresent())          option.minDf        = minDf.get();
+            if (maxDf.isPresent())          option.maxDf        = maxDf.get();
+            if (maxVocab.isPresent())       option.maxVocab     = maxVocab.get();
+            if (llInterval.isPresent())     option.llInterval   = llInterval.get();
+            if (convergence.isPresent())    option.convergence  = convergence.get();
+            if (patience.isPresent())       option.patience     = patience.get();
+            if (maxMinutes.isPresent())     option.maxMinutes   = maxMinutes.get();
             Estimator estimator = new Estimator(option);
+            trainingListeners.forEach(estimator::addListener);
             estimator.estimate();
+            modelRegistry.invalidate(domainId);
 
             DataModel dataModel = estimator.getTrnModel().getDataModel();
 
@@ -270,6 +335,64 @@ public class LibrairyService {
 
 
 
+    /**
+     * Absorb new documents into the online model of the domain, created on the first call and resumed from its saved
+     * state on the next ones, so the model grows with the domain without training it again from scratch
+     * @param documents texts of the new documents, as lemmas separated by spaces
+     * @param numTopics number of topics of a new model, ignored once the model exists
+     * @param batchSize number of documents of each mini-batch, 256 by default
+     * @param numDocuments expected number of documents of the domain, the ones absorbed so far by default
+     * @return number of documents absorbed by the online model
+     */
+    public synchronized long updateOnlineModel(String domain, List<String> documents, Optional<Integer> numTopics, Optional<Double> alpha, Optional<Double> beta, Optional<Integer> batchSize, Optional<Long> numDocuments) throws ModelError {
+
+        String domainId;
+        try {
+            domainId = URLEncoder.encode(domain,"UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new ModelError("Invalid domain name: " + domain);
+        }
+
+        File folder = Paths.get("output", "models","lda",domainId).toFile();
+        folder.mkdirs();
+
+        boolean resumed = new File(folder, "online" + OnlineEstimator.stateSuffix).exists();
+
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "-online",
+                resumed? "-estc" : "-est",
+                "-dir",folder.getAbsolutePath(),
+                "-model","online",
+                "-twords","10"
+        ));
+        if (numTopics.isPresent())      args.addAll(Arrays.asList("-ntopics",String.valueOf(numTopics.get())));
+        if (alpha.isPresent())          args.addAll(Arrays.asList("-alpha",String.valueOf(alpha.get())));
+        if (beta.isPresent())           args.addAll(Arrays.asList("-beta",String.valueOf(beta.get())));
+        if (batchSize.isPresent())      args.addAll(Arrays.asList("-batchsize",String.valueOf(batchSize.get())));
+        if (numDocuments.isPresent())   args.addAll(Arrays.asList("-ndocs",String.valueOf(numDocuments.get())));
+
+        try {
+            LDACmdOption option = new LDACmdOption();
+            CmdLineParser parser = new CmdLineParser(option);
+            parser.parseArgument(args.toArray(new String[args.size()]));
+
+            OnlineEstimator estimator = new OnlineEstimator(option);
+            estimator.train(documents.iterator());
+            if (!estimator.saveModel()) throw new ModelError("Error saving online model of domain: " + domainId);
+
+            LOG.info("Online model of domain " + domainId + (resumed? " updated" : " created") + " with " + documents.size()
+                    + " documents: " + estimator.getNumDocuments() + " documents, " + estimator.getV() + " words");
+            return estimator.getNumDocuments();
+        } catch (CmdLineException e) {
+            LOG.error("Error",e);
+            throw new ModelError("Error parsing online model parameters",e);
+        } catch (IOException e) {
+            LOG.error("Error",e);
+            throw new ModelError("Error loading online model of domain: " + domainId,e);
+        }
+    }
+
+
     public void inference(String domainId, File text, Optional<Integer> wordsPerTopic, Optional<Integer> iterations) throws ModelError {
 
         LOG.info("loading existing model for domain: " + domainId + " ..");
@@ -299,7 +422,8 @@ public class LibrairyService {
             CmdLineParser parser = new CmdLineParser(option);
             parser.parseArgument(args);
             LOG.info("inference topic distributions for document: " + text.getAbsolutePath() + " ..");
-            Inferencer inferencer = new Inferencer(option);
+            Inferencer inferencer = new Inferencer(option, modelRegistry.get(domainId).getModel());
+            trainingListeners.forEach(inferencer::addListener);
             Model model = inferencer.inference();
 
             LOG.info("Topic Distributions: ");
@@ -336,6 +460,113 @@ public class LibrairyService {
 
     }
 
+    public DataInference inference(String domainId, String text, Optional<Integer> wordsPerDocument) throws ModelError {
+        return inference(domainId, text, wordsPerDocument, Optional.empty());
+    }
+
+    /**
+     * Infer the topic distribution of a text in memory, with the model of the domain kept in the model registry
+     * @param wordsPerDocument number of most likely words of the document to return, none if empty
+     * @param output file to append the topic distribution to, as a line of the inferred documents file
+     */
+    public DataInference inference(String domainId, String text, Optional<Integer> wordsPerDocument, Optional<File> output) throws ModelError {
+        InferenceEngine engine = modelRegistry.get(domainId);
+        return inference(engine, engine.words(text), wordsPerDocument, output);
+    }
+
+    public DataInference inference(String domainId, List<String> tokens, Optional<Integer> wordsPerDocument) throws ModelError {
+        return inference(domainId, tokens, wordsPerDocument, Optional.empty());
+    }
+
+    public DataInference inference(String domainId, List<String> tokens, Optional<Integer> wordsPerDocument, Optional<File> output) throws ModelError {
+        InferenceEngine engine = modelRegistry.get(domainId);
+        return inference(engine, engine.words(tokens), wordsPerDocument, output);
+    }
+
+    private DataInference inference(InferenceEngine engine, int[] words, Optional<Integer> wordsPerDocument, Optional<File> output) throws ModelError {
+
+        double[] theta = engine.inference(words);
+
+        DataInference inference = new DataInference();
+        inference.setVector(Arrays.stream(theta).boxed().collect(Collectors.toList()));
+
+        if (wordsPerDocument.isPresent()){
+            for (int id : engine.topWords(theta, wordsPerDocument.get())){
+                Word word = new Word();
+                word.setValue(engine.word(id));
+                word.setScore(engine.probability(theta, id));
+                inference.getWords().add(word);
+            }
+        }
+
+        if (output.isPresent()){
+            StringBuilder line = new StringBuilder();
+            for (int k = 0; k < theta.length; k++){
+                line.append(k).append(":").append(theta[k]).append(" ");
+            }
+            line.append("\n");
+            try {
+                Files.write(output.get().toPath(), line.toString().getBytes("UTF-8"), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                throw new ModelError("Error writing inference to: " + output.get().getAbsolutePath(), e);
+            }
+        }
+        return inference;
+    }
+
+    /**
+     * Start an embedded HTTP server inferring topic distributions with the model of the domain
+     * @param maxBatchSize maximum number of documents sampled together, 32 by default
+     * @param maxWait maximum milliseconds to wait for a batch to fill, 5 by default
+     * @param workers number of batches sampled in parallel, one per processor by default
+     */
+    public InferenceServer inferenceServer(String domainId, int port, Optional<Integer> maxBatchSize, Optional<Long> maxWait, Optional<Integer> workers) throws ModelError {
+
+        InferenceServer server = new InferenceServer(modelRegistry.get(domainId), port,
+                maxBatchSize.isPresent()? maxBatchSize.get() : 32,
+                maxWait.isPresent()? maxWait.get() : 5,
+                workers.isPresent()? workers.get() : Runtime.getRuntime().availableProcessors());
+        try {
+            server.start();
+        } catch (IOException e) {
+            throw new ModelError("Error starting inference server on port: " + port, e);
+        }
+        return server;
+    }
+
+    public InferenceEngine inferenceEngine(String domainId, Optional<Integer> iterations) throws ModelError {
+
+        LOG.info("loading existing model for domain: " + domainId + " ..");
+
+        File folder = Paths.get("output", "models","lda",domainId).toFile();
+
+        if (!folder.exists()) {
+            throw new ModelError("Model not found! Try to train a LDA model before to inference");
+        }
+
+        String numIterations    = iterations.isPresent()? String.valueOf(iterations.get()) : "20";
+
+        String[] args = new String[]{
+                "-inf",
+                "-dir",folder.getAbsolutePath(),
+                "-model","model",
+                "-niters",numIterations
+        };
+
+        try {
+            LDACmdOption option = new LDACmdOption();
+            CmdLineParser parser = new CmdLineParser(option);
+            parser.parseArgument(args);
+            return new InferenceEngine(option);
+        } catch (CmdLineException e) {
+            LOG.error("Error",e);
+            throw new ModelError("Error parsing inference parameters",e);
+        } catch (IOException e) {
+            LOG.error("Error",e);
+            throw new ModelError("Error loading model of domain: " + domainId,e);
+        }
+    }
+
 
     public void compare(String domain1, String domain2, RankingSimilarityMetric metric, Optional<Integer> numWords) throws ModelError {
 
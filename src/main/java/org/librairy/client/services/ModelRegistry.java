@@ -0,0 +1,221 @@
+package org.librairy.client.services;
+
+import org.librairy.client.exceptions.ModelError;
+import org.librairy.client.topics.InferenceEngine;
+import org.librairy.client.topics.Model;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Trained models by domain, loaded lazily and kept in memory within a byte budget.
+ *
+ * The size of each model is estimated from the heap used by its counts, corpus, vocabulary and distributions when it
+ * is loaded, and again only when its engine reports growth. When the budget is exceeded the least recently used models
+ * are evicted (the last loaded model is always kept). Concurrent requests for a domain being loaded wait for that
+ * single load, which is not kept if the domain is invalidated meanwhile: only the load counts as a miss.
+ */
+public class ModelRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ModelRegistry.class);
+
+    public interface Loader {
+        InferenceEngine load(String domainId) throws ModelError;
+    }
+
+    private static class Entry {
+        final InferenceEngine engine;
+        long size;
+
+        Entry(InferenceEngine engine, long size){
+            this.engine = engine;
+            this.size   = size;
+        }
+    }
+
+    private final long maxBytes;
+    private final Loader loader;
+
+    // by access order, guarded by this
+    private final LinkedHashMap<String, Entry> models = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<InferenceEngine>> loading = new HashMap<>();
+    private long usedBytes = 0;
+
+    private final AtomicLong hits       = new AtomicLong();
+    private final AtomicLong misses     = new AtomicLong();
+    private final AtomicLong evictions  = new AtomicLong();
+
+    public ModelRegistry(long maxBytes, Loader loader){
+        this.maxBytes   = maxBytes;
+        this.loader     = loader;
+    }
+
+    /**
+     * Model of a domain, loading it if not in memory
+     */
+    public InferenceEngine get(String domainId) throws ModelError {
+
+        CompletableFuture<InferenceEngine> future;
+        boolean owner = false;
+        synchronized (this){
+            Entry entry = models.get(domainId);
+            if (entry != null){
+                hits.incrementAndGet();
+                return entry.engine;
+            }
+
+            future = loading.get(domainId);
+            if (future == null){
+                future = new CompletableFuture<>();
+                loading.put(domainId, future);
+                owner = true;
+                misses.incrementAndGet();
+            }
+            else {
+                // served by the load in progress
+                hits.incrementAndGet();
+            }
+        }
+
+        if (!owner){
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ModelError("Interrupted while loading model of domain: " + domainId, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ModelError) throw (ModelError) e.getCause();
+                throw new ModelError("Error loading model of domain: " + domainId, e.getCause());
+            }
+        }
+
+        try {
+            InferenceEngine engine = loader.load(domainId);
+            synchronized (this){
+                // not kept if the domain was invalidated while loading
+                if (loading.remove(domainId, future)) put(domainId, engine);
+            }
+            future.complete(engine);
+            return engine;
+        } catch (Throwable e) {
+            // also errors, e.g. out of memory, so the requests waiting for this load do not wait forever
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            synchronized (this){
+                loading.remove(domainId, future);
+            }
+        }
+    }
+
+    private synchronized void put(String domainId, InferenceEngine engine){
+        long size = estimateSize(engine);
+        Entry previous = models.put(domainId, new Entry(engine, size));
+        if (previous != null) usedBytes -= previous.size;
+        usedBytes += size;
+        LOG.info("Model of domain " + domainId + " loaded (" + size + " bytes, " + usedBytes + "/" + maxBytes + " in use)");
+        engine.onGrowth(() -> resize(domainId, engine));
+        evict();
+    }
+
+    /**
+     * Estimate again the size of a model whose engine has grown after being loaded (e.g. when scoring words)
+     */
+    private synchronized void resize(String domainId, InferenceEngine engine){
+        Entry entry = models.get(domainId);
+        // evicted or replaced meanwhile
+        if (entry == null || entry.engine != engine) return;
+
+        long size = estimateSize(engine);
+        if (size == entry.size) return;
+
+        usedBytes += size - entry.size;
+        entry.size = size;
+        LOG.debug("Model of domain " + domainId + " resized (" + size + " bytes, " + usedBytes + "/" + maxBytes + " in use)");
+        evict();
+    }
+
+    /**
+     * Evict the least recently used models until the budget is met
+     */
+    private synchronized void evict(){
+        Iterator<Map.Entry<String, Entry>> eldest = models.entrySet().iterator();
+        while (usedBytes > maxBytes && models.size() > 1){
+            Map.Entry<String, Entry> evicted = eldest.next();
+            usedBytes -= evicted.getValue().size;
+            eldest.remove();
+            evictions.incrementAndGet();
+            LOG.info("Model of domain " + evicted.getKey() + " evicted");
+        }
+    }
+
+    /**
+     * Remove the model of a domain, e.g. after training it again. A load in progress is not kept, the next request
+     * loads the model again.
+     */
+    public synchronized void invalidate(String domainId){
+        Entry entry = models.remove(domainId);
+        if (entry != null) usedBytes -= entry.size;
+        loading.remove(domainId);
+    }
+
+    public synchronized void clear(){
+        models.clear();
+        loading.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * Approximate heap of a loaded model and of its inference engine
+     */
+    public static long estimateSize(InferenceEngine engine){
+        return estimateSize(engine.getModel()) + engine.sizeInBytes();
+    }
+
+    /**
+     * Approximate heap of a loaded model: counts (none for memory-mapped word-topic counts), documents and topic
+     * assignments if loaded, vocabulary, and the distributions if computed
+     */
+    public static long estimateSize(Model model){
+        long size = model.countsSizeInBytes();
+        if (model.z != null) size += 4L * model.z.length;
+        if (model.data != null){
+            size += 4L * (model.data.tokens.length + model.data.offsets.length);
+            if (model.data.localDict != null) size += model.data.localDict.sizeInBytes();
+        }
+        if (model.theta != null) size += model.theta.sizeInBytes();
+        if (model.phi != null) size += model.phi.sizeInBytes();
+        return size;
+    }
+
+    public synchronized int size(){
+        return models.size();
+    }
+
+    public synchronized long getUsedBytes(){
+        return usedBytes;
+    }
+
+    public long getMaxBytes(){
+        return maxBytes;
+    }
+
+    public long getHits(){
+        return hits.get();
+    }
+
+    public long getMisses(){
+        return misses.get();
+    }
+
+    public long getEvictions(){
+        return evictions.get();
+    }
+}
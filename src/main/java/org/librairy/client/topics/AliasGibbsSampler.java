@@ -0,0 +1,204 @@
+package org.librairy.client.topics;
+
+import java.util.Arrays;
+
+/**
+ * Metropolis-Hastings sampler with alias tables (AliasLDA / LightLDA) for very large numbers of topics.
+ *
+ * Each token alternates two proposals, both drawn in O(1):
+ *
+ *   word proposal:      q_w(k) ~ (nw + beta) / (nwsum + Vbeta)
+ *   document proposal:  q_d(k) ~ nd + alpha
+ *
+ * The word proposal is a mixture of a sparse alias table per word, over the non-zero topics of the word, and a
+ * dense alias table shared by all words for the smoothing term. Both are built from stale counts and rebuilt lazily
+ * after as many draws as entries they have. The non-zero topics of every word are kept up to date as the counts
+ * change, so rebuilding the table of a word costs its number of topics instead of K, and the cost of rebuilding any
+ * table is amortized over its draws. The document proposal picks
+ * the topic of another random token of the document, or a uniform topic. Proposals are accepted or rejected against the
+ * true conditional, so the chain keeps the same stationary distribution as the dense sampler.
+ *
+ * Labeled documents are sampled with the dense method.
+ */
+public class AliasGibbsSampler extends GibbsSampler {
+
+    // Metropolis-Hastings steps (word and document proposals) per token
+    private static final int MH_STEPS = 2;
+
+    private final AliasTable[] wordTables;
+    private final AliasTable smoothingTable;
+
+    // non-zero topics of each word
+    private final WordTopicLists wordTopics;
+
+    // temp variables to build tables
+    private final int[] topicBuffer;
+    private final double[] weightBuffer;
+    private final int[] workBuffer;
+
+    public AliasGibbsSampler(Model model)
+    {
+        this(model, model.nw, model.nwsum, model.random);
+    }
+
+    public AliasGibbsSampler(Model model, CountMatrix nw, int[] nwsum, RandomNumberGenerator random)
+    {
+        super(model, nw, nwsum, random);
+
+        this.wordTables     = new AliasTable[model.V];
+        this.smoothingTable = new AliasTable(model.K);
+        this.wordTopics     = new WordTopicLists(nw);
+        this.topicBuffer    = new int[model.K];
+        this.weightBuffer   = new double[model.K];
+        this.workBuffer     = new int[model.K];
+
+        wordTopics.rebuild();
+    }
+
+    /**
+     * Rebuild the topic lists and mark every table as stale
+     */
+    @Override
+    public void reset()
+    {
+        wordTopics.rebuild();
+        for (AliasTable table : wordTables){
+            if (table != null) table.remaining = 0;
+        }
+        smoothingTable.remaining = 0;
+    }
+
+    @Override
+    public int sampling(int m, int n)
+    {
+        int offset = model.data.offsets[m];
+        int oldTopic = model.z[offset + n];
+        int w = model.data.tokens[offset + n];
+
+        if (model.data.labels != null && model.data.getLabels(m) != null){
+            int topic = super.sampling(m, n);
+            wordTopics.update(w, oldTopic);
+            wordTopics.update(w, topic);
+            return topic;
+        }
+
+        // remove z_i from the count variables
+        nw.decrement(w, oldTopic);
+        model.nd.decrement(m, oldTopic);
+        nwsum[oldTopic] -= 1;
+        model.ndsum[m] -= 1;
+        wordTopics.update(w, oldTopic);
+
+        double Kalpha = model.K * model.alpha;
+        int length = model.data.length(m);
+
+        AliasTable wordTable = wordTable(w);
+        AliasTable smoothing = smoothingTable();
+
+        int topic = oldTopic;
+        double p = target(m, w, topic);
+        for (int step = 0; step < MH_STEPS; step++){
+
+            // word proposal
+            int proposal;
+            if (random.nextDouble() * (wordTable.getMass() + smoothing.getMass()) < wordTable.getMass()){
+                proposal = wordTable.sample(random.nextDouble());
+            }
+            else {
+                proposal = smoothing.sample(random.nextDouble());
+            }
+            wordTable.remaining--;
+            smoothing.remaining--;
+
+            if (proposal != topic){
+                double proposalP = target(m, w, proposal);
+                double ratio = (proposalP * (wordTable.weight(topic) + smoothing.weight(topic)))
+                        / (p * (wordTable.weight(proposal) + smoothing.weight(proposal)));
+                if (ratio >= 1.0 || random.nextDouble() < ratio){
+                    topic   = proposal;
+                    p       = proposalP;
+                }
+            }
+
+            // document proposal, from the topic of any other token of the document
+            if (random.nextDouble() * (length - 1 + Kalpha) < length - 1){
+                int i = random.nextInt(length - 1);
+                proposal = model.z[offset + (i < n ? i : i + 1)];
+            }
+            else {
+                proposal = random.nextInt(model.K);
+            }
+
+            if (proposal != topic){
+                double proposalP = target(m, w, proposal);
+                double ratio = (proposalP * (model.nd.get(m, topic) + model.alpha))
+                        / (p * (model.nd.get(m, proposal) + model.alpha));
+                if (ratio >= 1.0 || random.nextDouble() < ratio){
+                    topic   = proposal;
+                    p       = proposalP;
+                }
+            }
+        }
+
+        // add newly estimated z_i to count variables
+        nw.increment(w, topic);
+        model.nd.increment(m, topic);
+        nwsum[topic] += 1;
+        model.ndsum[m] += 1;
+        wordTopics.update(w, topic);
+
+        return topic;
+    }
+
+    /**
+     * Unnormalized conditional probability of a topic, with z_i removed from the counts
+     */
+    private double target(int m, int w, int k)
+    {
+        return (model.nd.get(m, k) + model.alpha) *
+                (nw.get(w, k) + model.beta) /
+                (nwsum[k] + model.V * model.beta);
+    }
+
+    /**
+     * Sparse table over nw / (nwsum + Vbeta), rebuilt from the non-zero topics of the word when stale
+     */
+    private AliasTable wordTable(int w)
+    {
+        AliasTable table = wordTables[w];
+        if (table != null && table.remaining > 0) return table;
+
+        double Vbeta = model.V * model.beta;
+        int size = wordTopics.size(w);
+        System.arraycopy(wordTopics.topics(w), 0, topicBuffer, 0, size);
+        Arrays.sort(topicBuffer, 0, size);
+        for (int i = 0; i < size; i++){
+            int k = topicBuffer[i];
+            weightBuffer[i] = nw.get(w, k) / (nwsum[k] + Vbeta);
+        }
+
+        if (table == null){
+            table = new AliasTable(size);
+            wordTables[w] = table;
+        }
+        table.build(topicBuffer, weightBuffer, size, workBuffer);
+        table.remaining = Math.max(size, 1);
+        return table;
+    }
+
+    /**
+     * Dense table over beta / (nwsum + Vbeta), shared by all words and rebuilt when stale
+     */
+    private AliasTable smoothingTable()
+    {
+        if (smoothingTable.remaining > 0) return smoothingTable;
+
+        double Vbeta = model.V * model.beta;
+        for (int k = 0; k < model.K; k++){
+            weightBuffer[k] = model.beta / (nwsum[k] + Vbeta);
+        }
+        smoothingTable.build(weightBuffer, model.K, workBuffer);
+        smoothingTable.remaining = model.K;
+        return smoothingTable;
+    }
+}
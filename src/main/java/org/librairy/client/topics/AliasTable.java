@@ -0,0 +1,122 @@
+package org.librairy.client.topics;
+
+/**
+ * Walker alias table (Vose's method) to draw topics in O(1) from a fixed discrete distribution.
+ *
+ * The table can be sparse, i.e. defined only over a sorted list of topics, or dense over [0, K). The unnormalized
+ * weights used to build it are kept, so the proposal probability of any topic can be evaluated later on.
+ */
+public class AliasTable {
+
+    private int size;
+    private boolean dense;
+    private int[] topics;   // sorted topic ids of sparse tables
+    private double[] weights;
+    private double[] prob;
+    private int[] alias;
+    private double mass;
+
+    // draws left before the table is considered stale
+    int remaining;
+
+    public AliasTable(int capacity)
+    {
+        allocate(Math.max(capacity, 1));
+    }
+
+    /**
+     * Build a dense table over [0, size)
+     * @param work scratch array of at least size entries
+     */
+    public void build(double[] weights, int size, int[] work)
+    {
+        build(null, weights, size, work);
+    }
+
+    /**
+     * Build a sparse table over the given (sorted) topics
+     * @param work scratch array of at least size entries
+     */
+    public void build(int[] topics, double[] weights, int size, int[] work)
+    {
+        if (size > prob.length) allocate(size);
+
+        this.size   = size;
+        this.dense  = (topics == null);
+        this.mass   = 0.0;
+        for (int i = 0; i < size; i++){
+            this.weights[i] = weights[i];
+            mass += weights[i];
+        }
+        if (!dense) System.arraycopy(topics, 0, this.topics, 0, size);
+
+        // stacks of small entries from the start of the work array and of large ones from its end, together they
+        // never hold more than size entries
+        int numSmall = 0, numLarge = 0;
+        for (int i = 0; i < size; i++){
+            prob[i] = weights[i] * size / mass;
+            if (prob[i] < 1.0) work[numSmall++] = i;
+            else work[size - 1 - numLarge++] = i;
+        }
+
+        while (numSmall > 0 && numLarge > 0){
+            int l = work[--numSmall];
+            int g = work[size - numLarge--];
+            alias[l] = g;
+            prob[g] = (prob[g] + prob[l]) - 1.0;
+            if (prob[g] < 1.0) work[numSmall++] = g;
+            else work[size - 1 - numLarge++] = g;
+        }
+
+        // remaining entries are 1 up to rounding errors
+        while (numLarge > 0) prob[work[size - numLarge--]] = 1.0;
+        while (numSmall > 0) prob[work[--numSmall]] = 1.0;
+    }
+
+    /**
+     * Draw a topic
+     * @param u uniform random number in [0, 1)
+     */
+    public int sample(double u)
+    {
+        double x = u * size;
+        int i = (int) x;
+        int index = (x - i < prob[i]) ? i : alias[i];
+        return dense ? index : topics[index];
+    }
+
+    /**
+     * Unnormalized weight of a topic when the table was built
+     */
+    public double weight(int topic)
+    {
+        if (dense) return weights[topic];
+
+        int low = 0, high = size - 1;
+        while (low <= high){
+            int mid = (low + high) >>> 1;
+            if (topics[mid] < topic) low = mid + 1;
+            else if (topics[mid] > topic) high = mid - 1;
+            else return weights[mid];
+        }
+        return 0.0;
+    }
+
+    public double getMass()
+    {
+        return mass;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    private void allocate(int capacity)
+    {
+        topics  = new int[capacity];
+        weights = new double[capacity];
+        prob    = new double[capacity];
+        alias   = new int[capacity];
+    }
+}
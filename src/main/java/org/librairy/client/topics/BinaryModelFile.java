@@ -0,0 +1,273 @@
+package org.librairy.client.topics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Versioned binary format of a trained model, loaded without any parsing.
+ *
+ * All values are big-endian and sections are stored one after the other:
+ *
+ *   header         magic, version, K, V, M, liter (int), alpha, beta (double), number of tokens (long)
+ *   nwsum          K ints
+ *   nw             V x K ints, row-major
+ *   doc lengths    M ints
+ *   words          one int per token
+ *   topics         one int per token
+ *   dictionary     V + 1 int offsets followed by the UTF-8 bytes of the words
+ *
+ * For inference only the header, the counts and the dictionary are needed, and the word-topic counts are
+ * memory-mapped instead of read, so loading takes milliseconds whatever the size of the training corpus.
+ */
+public class BinaryModelFile {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BinaryModelFile.class);
+
+    public static final int MAGIC   = 0x4C444142; // "LDAB"
+    public static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 6 * 4 + 3 * 8;
+
+    /**
+     * Write the model to a temporary file and rename it to the final one
+     */
+    public static boolean write(Model model, String filename)
+    {
+        return write(model, model.liter, null, model.nw, model.nwsum, filename);
+    }
+
+    /**
+     * Write a snapshot of the model to a temporary file and rename it to the final one
+     * @param topics topic assignments aligned with the tokens of the corpus, or null to take them from the model
+     */
+    public static boolean write(Model model, int liter, int[] topics, CountMatrix nw, int[] nwsum, String filename)
+    {
+        File target = new File(filename);
+        File temp   = new File(filename + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+            int numTokens = model.data.numTokens;
+
+            // header
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(model.K);
+            out.writeInt(model.V);
+            out.writeInt(model.M);
+            out.writeInt(liter);
+            out.writeDouble(model.alpha);
+            out.writeDouble(model.beta);
+            out.writeLong(numTokens);
+
+            // counts
+            for (int k = 0; k < model.K; k++){
+                out.writeInt(nwsum[k]);
+            }
+            for (int w = 0; w < model.V; w++){
+                for (int k = 0; k < model.K; k++){
+                    out.writeInt(nw.get(w, k));
+                }
+            }
+
+            // topic assignments
+            for (int m = 0; m < model.M; m++){
+                out.writeInt(model.data.length(m));
+            }
+            for (int i = 0; i < numTokens; i++){
+                out.writeInt(model.data.tokens[i]);
+            }
+            if (topics == null){
+                topics = model.z;
+            }
+            for (int i = 0; i < numTokens; i++){
+                out.writeInt(topics[i]);
+            }
+
+            // dictionary
+            model.data.localDict.write(out);
+        }
+        catch (Exception e) {
+            LOG.debug("Error while saving binary model: " + e.getMessage());
+            e.printStackTrace();
+            temp.delete();
+            return false;
+        }
+
+        try {
+            moveAtomically(temp, target);
+        } catch (IOException e) {
+            LOG.debug("Error while renaming binary model: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Load a binary model
+     * @param assignments read documents and topic assignments (to continue the estimation) or just memory-map the
+     *                    word-topic counts (for inference)
+     */
+    public static boolean read(Model model, String filename, boolean assignments)
+    {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+             FileChannel channel = file.getChannel()) {
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, header, 0);
+            header.flip();
+
+            if (header.getInt() != MAGIC){
+                LOG.debug("Not a binary model: " + filename);
+                return false;
+            }
+            int version = header.getInt();
+            if (version != VERSION){
+                LOG.debug("Unsupported binary model version " + version + ": " + filename);
+                return false;
+            }
+
+            int K           = header.getInt();
+            int V           = header.getInt();
+            int M           = header.getInt();
+            int liter       = header.getInt();
+            double alpha    = header.getDouble();
+            double beta     = header.getDouble();
+            long numTokens  = header.getLong();
+
+            long nwsumPosition  = HEADER_BYTES;
+            long nwPosition     = nwsumPosition + 4L * K;
+            long lengthsPosition= nwPosition + 4L * V * K;
+            long wordsPosition  = lengthsPosition + 4L * M;
+            long topicsPosition = wordsPosition + 4L * numTokens;
+            long dictPosition   = topicsPosition + 4L * numTokens;
+            if (channel.size() < dictPosition + 4L * (V + 1)){
+                LOG.debug("Truncated binary model: " + filename);
+                return false;
+            }
+
+            model.K     = K;
+            model.V     = V;
+            model.M     = M;
+            model.liter = liter;
+            model.alpha = alpha;
+            model.beta  = beta;
+
+            LDADataset data = new LDADataset();
+            data.V = V;
+
+            if (assignments){
+                IntReader lengths   = new IntReader(channel, lengthsPosition);
+                IntReader words     = new IntReader(channel, wordsPosition);
+                IntReader topics    = new IntReader(channel, topicsPosition);
+
+                if (numTokens > Integer.MAX_VALUE - 8){
+                    LOG.debug("Too many tokens in binary model: " + filename);
+                    return false;
+                }
+
+                // documents in compressed sparse row form
+                data.tokens     = new int[(int) numTokens];
+                data.offsets    = new int[M + 1];
+                model.z         = new int[(int) numTokens];
+                for (int m = 0; m < M; m++){
+                    data.offsets[m + 1] = data.offsets[m] + lengths.next();
+                }
+                for (int i = 0; i < numTokens; i++){
+                    data.tokens[i] = words.next();
+                }
+                for (int i = 0; i < numTokens; i++){
+                    model.z[i] = topics.next();
+                }
+                data.numTokens  = (int) numTokens;
+                data.M          = M;
+            }
+            else {
+                IntReader nwsum = new IntReader(channel, nwsumPosition);
+                model.nwsum = new int[K];
+                for (int k = 0; k < K; k++){
+                    model.nwsum[k] = nwsum.next();
+                }
+                model.nw = new MappedCountMatrix(channel, nwPosition, V, K);
+            }
+
+            // dictionary
+            IntReader offsets = new IntReader(channel, dictPosition);
+            int[] wordOffsets = new int[V + 1];
+            for (int w = 0; w <= V; w++){
+                wordOffsets[w] = offsets.next();
+            }
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, dictPosition + 4L * (V + 1), wordOffsets[V]);
+            data.localDict = Dictionary.wrap(bytes, wordOffsets, V);
+            model.data = data;
+
+            return true;
+        }
+        catch (Exception e) {
+            LOG.debug("Error while loading binary model: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    static void moveAtomically(File source, File target) throws IOException
+    {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining()){
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new IOException("Unexpected end of file");
+            position += read;
+        }
+    }
+
+    /**
+     * Sequential reader of big-endian ints through a small buffer
+     */
+    private static class IntReader
+    {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        private long position;
+
+        IntReader(FileChannel channel, long position)
+        {
+            this.channel    = channel;
+            this.position   = position;
+            buffer.limit(0);
+        }
+
+        int next() throws IOException
+        {
+            if (buffer.remaining() < 4){
+                buffer.compact();
+                int read;
+                while (buffer.position() < 4){
+                    if ((read = channel.read(buffer, position)) < 0) throw new IOException("Unexpected end of file");
+                    position += read;
+                }
+                buffer.flip();
+            }
+            return buffer.getInt();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.librairy.client.topics;
+
+/**
+ * Count matrix backed by arrays of unsigned 16-bit values, for counts up to 65535
+ */
+public final class CharCountMatrix extends CountMatrix {
+
+    public static final int MAX_COUNT = Character.MAX_VALUE;
+
+    private final char[][] counts;
+
+    public CharCountMatrix(int rows, int cols)
+    {
+        super(rows, cols);
+        this.counts = new char[numSegments()][];
+        for (int i = 0; i < counts.length; i++){
+            counts[i] = new char[segmentSize(i)];
+        }
+    }
+
+    @Override
+    public int get(int row, int col)
+    {
+        return counts[row >>> shift][(row & mask) * cols + col];
+    }
+
+    @Override
+    public void set(int row, int col, int value)
+    {
+        counts[row >>> shift][(row & mask) * cols + col] = (char) value;
+    }
+
+    @Override
+    public void increment(int row, int col)
+    {
+        counts[row >>> shift][(row & mask) * cols + col]++;
+    }
+
+    @Override
+    public void decrement(int row, int col)
+    {
+        counts[row >>> shift][(row & mask) * cols + col]--;
+    }
+
+    @Override
+    public void copyFrom(CountMatrix other)
+    {
+        char[][] source = ((CharCountMatrix) other).counts;
+        for (int i = 0; i < counts.length; i++){
+            System.arraycopy(source[i], 0, counts[i], 0, counts[i].length);
+        }
+    }
+
+    @Override
+    public CountMatrix copy()
+    {
+        CharCountMatrix matrix = new CharCountMatrix(rows, cols);
+        matrix.copyFrom(this);
+        return matrix;
+    }
+
+    @Override
+    public long sizeInBytes()
+    {
+        return 2L * rows * cols;
+    }
+}
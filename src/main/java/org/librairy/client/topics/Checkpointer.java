@@ -0,0 +1,194 @@
+package org.librairy.client.topics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Periodic checkpoints of an estimation, every number of iterations and/or minutes.
+ *
+ * At a checkpoint the topic assignments are copied into one of two snapshot buffers, which is all the sampling thread
+ * does. A background thread rebuilds the counts from the snapshot and writes it in the binary model format, through a
+ * temporary file renamed once complete, as <model>.checkpoint-<iteration>.bin. If both buffers are still being written
+ * the checkpoint is skipped instead of stalling the sampler.
+ *
+ * The last checkpoints are kept, so -estc can fall back to an older one if the newest cannot be read. They are removed
+ * once the final model is saved: only an interrupted estimation leaves checkpoints behind, and only -estc reads them.
+ */
+public class Checkpointer
+{
+    private static final Logger LOG = LoggerFactory.getLogger(Checkpointer.class);
+
+    public static String checkpointSuffix = ".checkpoint-"; // followed by the iteration and the binary suffix
+
+    // checkpoint files kept on disk
+    private static final int KEEP = 2;
+
+    private final Model model;
+    private final int everyIters;
+    private final long everyMillis;
+    private final ExecutorService executor;
+
+    // double buffer of topic assignments
+    private final int[][] buffers = new int[2][];
+    private final Future<?>[] pending = new Future<?>[2];
+    private int next = 0;
+
+    // counts rebuilt from a snapshot, only used by the writer thread
+    private CountMatrix nw;
+    private int[] nwsum;
+
+    private long lastCheckpoint;
+
+    public Checkpointer(Model model, int everyIters, double everyMinutes)
+    {
+        this.model          = model;
+        this.everyIters     = everyIters;
+        this.everyMillis    = (long) (everyMinutes * 60 * 1000);
+        this.lastCheckpoint = System.currentTimeMillis();
+        this.executor       = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lda-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static boolean isEnabled(LDACmdOption option)
+    {
+        return option.checkpointIters > 0 || option.checkpointMinutes > 0;
+    }
+
+    /**
+     * Take a checkpoint if one is due after the current iteration
+     */
+    public void iterationDone()
+    {
+        boolean due = (everyIters > 0 && model.liter % everyIters == 0)
+                || (everyMillis > 0 && System.currentTimeMillis() - lastCheckpoint >= everyMillis);
+        if (due) checkpoint();
+    }
+
+    /**
+     * Snapshot the topic assignments and write them in background
+     * @return false if the checkpoint was skipped because previous ones are still being written
+     */
+    public boolean checkpoint()
+    {
+        int slot = next;
+        if (pending[slot] != null && !pending[slot].isDone()){
+            LOG.debug("Checkpoint skipped at iteration " + model.liter + ": previous checkpoints still being written");
+            return false;
+        }
+
+        if (buffers[slot] == null || buffers[slot].length != model.z.length){
+            buffers[slot] = new int[model.z.length];
+        }
+        final int[] topics = buffers[slot];
+        System.arraycopy(model.z, 0, topics, 0, topics.length);
+
+        final int liter = model.liter;
+        pending[slot]   = executor.submit(() -> write(topics, liter));
+        next            = 1 - slot;
+        lastCheckpoint  = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Wait for the checkpoints being written and stop the writer thread
+     */
+    public void close()
+    {
+        for (Future<?> future : pending){
+            if (future == null) continue;
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                LOG.debug("Error while writing checkpoint: " + e.getCause());
+            }
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Remove all checkpoints of a model, once the final model has been saved or a new estimation starts
+     */
+    public static void clear(String dir, String modelName)
+    {
+        for (File file : checkpoints(dir, modelName)){
+            if (!file.delete()) LOG.debug("Unable to delete checkpoint " + file);
+        }
+    }
+
+    private void write(int[] topics, int liter)
+    {
+        // rebuild the word-topic counts of the snapshot
+        if (nw == null){
+            nw      = new IntCountMatrix(model.V, model.K);
+            nwsum   = new int[model.K];
+        }
+        else {
+            for (int w = 0; w < model.V; w++){
+                for (int k = 0; k < model.K; k++){
+                    nw.set(w, k, 0);
+                }
+            }
+            Arrays.fill(nwsum, 0);
+        }
+        for (int i = 0; i < model.data.numTokens; i++){
+            nw.increment(model.data.tokens[i], topics[i]);
+            nwsum[topics[i]]++;
+        }
+
+        String filename = model.dir + File.separator + model.modelName + checkpointSuffix + liter + Model.binarySuffix;
+        if (!BinaryModelFile.write(model, liter, topics, nw, nwsum, filename)){
+            LOG.warn("Unable to write checkpoint " + filename);
+            return;
+        }
+        LOG.info("Checkpoint saved at iteration " + liter + ": " + filename);
+
+        // remove older checkpoints
+        List<File> checkpoints = checkpoints(model.dir, model.modelName);
+        for (int c = KEEP; c < checkpoints.size(); c++){
+            checkpoints.get(c).delete();
+        }
+    }
+
+    /**
+     * Checkpoint files of a model, from the newest (highest iteration) to the oldest
+     */
+    public static List<File> checkpoints(String dir, String modelName)
+    {
+        List<File> checkpoints = new ArrayList<File>();
+        final String prefix = modelName + checkpointSuffix;
+        File[] files = new File(dir).listFiles((parent, name) -> name.startsWith(prefix) && name.endsWith(Model.binarySuffix));
+        if (files == null) return checkpoints;
+
+        for (File file : files){
+            if (iteration(file, prefix) >= 0) checkpoints.add(file);
+        }
+        Collections.sort(checkpoints, (a, b) -> Integer.compare(iteration(b, prefix), iteration(a, prefix)));
+        return checkpoints;
+    }
+
+    private static int iteration(File file, String prefix)
+    {
+        String name = file.getName();
+        try {
+            return Integer.parseInt(name.substring(prefix.length(), name.length() - Model.binarySuffix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
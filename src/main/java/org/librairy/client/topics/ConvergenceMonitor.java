@@ -0,0 +1,197 @@
+package org.librairy.client.topics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+
+/**
+ * Tracks the convergence of an estimation and decides when to stop it.
+ *
+ * Every number of iterations the log-likelihood of the training corpus is computed and, if a held-out file is given,
+ * the perplexity of its documents. The estimation is considered converged when the relative improvement of the
+ * held-out perplexity (or of the log-likelihood without held-out documents) stays below a threshold for a number of
+ * consecutive evaluations. Independently, the estimation stops once its wall-clock budget is spent.
+ */
+public class ConvergenceMonitor
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ConvergenceMonitor.class);
+
+    // fold-in iterations to estimate the topics of each held-out document
+    private static final int HELDOUT_ITERS = 20;
+
+    private final Model model;
+    private final int interval;
+    private final double threshold;
+    private final int patience;
+    private final long maxMillis;
+    private final long start;
+
+    // held-out documents, as word ids of the training dictionary
+    private int[][] heldout;
+    private RandomNumberGenerator random;
+
+    private double logLikelihood = Double.NaN;
+    private double perplexity = Double.NaN;
+    private double best;
+    private int evaluations = 0;
+    private int stale = 0;
+
+    public ConvergenceMonitor(LDACmdOption option, Model model)
+    {
+        this.model      = model;
+        this.interval   = option.llInterval;
+        this.threshold  = option.convergence;
+        this.patience   = Math.max(1, option.patience);
+        this.maxMillis  = (long) (option.maxMinutes * 60 * 1000);
+        this.start      = System.currentTimeMillis();
+
+        if (interval > 0 && !option.heldout.isEmpty()){
+            String filePath = model.dir + File.separator + option.heldout;
+            if (!new File(filePath).exists()){
+                filePath = option.heldout;
+            }
+
+            readHeldout(filePath);
+        }
+    }
+
+    /**
+     * Read held-out documents, keeping only the words of the training dictionary
+     */
+    private boolean readHeldout(String filePath)
+    {
+        try {
+            LDADataset data = new LDADataset();
+            data.setDictionary(model.data.localDict);
+            data.readDataSet(filePath, true);
+
+            heldout = new int[data.M][];
+            for (int m = 0; m < data.M; m++){
+                heldout[m] = new int[data.length(m)];
+                for (int n = 0; n < heldout[m].length; n++){
+                    heldout[m][n] = data.lid2gid[data.tokens[data.offsets[m] + n]];
+                }
+            }
+            random = model.random.split();
+            return true;
+        }
+        catch (Exception e) {
+            LOG.debug("Error while reading held-out documents: " + e.getMessage());
+            e.printStackTrace();
+            heldout = null;
+            return false;
+        }
+    }
+
+    public static boolean isEnabled(LDACmdOption option)
+    {
+        return option.llInterval > 0 || option.maxMinutes > 0;
+    }
+
+    /**
+     * Evaluate the model if due after the current iteration
+     * @return true if the estimation should stop
+     */
+    public boolean converged()
+    {
+        if (maxMillis > 0 && System.currentTimeMillis() - start >= maxMillis){
+            LOG.info("Time budget spent at iteration " + model.liter);
+            return true;
+        }
+
+        if (interval <= 0 || model.liter % interval != 0){
+            return false;
+        }
+
+        logLikelihood = model.logLikelihood();
+        double metric = logLikelihood;
+        if (heldout != null){
+            perplexity = perplexity();
+            metric = -perplexity;
+            LOG.info("Iteration " + model.liter + ": log-likelihood " + logLikelihood + ", held-out perplexity " + perplexity);
+        }
+        else {
+            LOG.info("Iteration " + model.liter + ": log-likelihood " + logLikelihood);
+        }
+
+        if (evaluations > 0){
+            double improvement = (metric - best) / Math.abs(best);
+            stale = (improvement < threshold)? stale + 1 : 0;
+        }
+        best = (evaluations == 0)? metric : Math.max(best, metric);
+        evaluations++;
+
+        if (threshold > 0 && stale >= patience){
+            LOG.info("Converged at iteration " + model.liter);
+            return true;
+        }
+        return false;
+    }
+
+    public double getLogLikelihood()
+    {
+        return logLikelihood;
+    }
+
+    public double getPerplexity()
+    {
+        return perplexity;
+    }
+
+    /**
+     * Perplexity of the held-out documents, with their topics sampled against the current topic-word counts
+     */
+    public double perplexity()
+    {
+        int K = model.K;
+        double alpha = model.alpha;
+        double Vbeta = model.V * model.beta;
+        double[] p = new double[K];
+
+        double logLikelihood = 0.0;
+        long numTokens = 0;
+        for (int[] words : heldout){
+            if (words.length == 0) continue;
+
+            int[] z = new int[words.length];
+            int[] nd = new int[K];
+            for (int n = 0; n < words.length; n++){
+                z[n] = random.nextInt(K);
+                nd[z[n]]++;
+            }
+
+            for (int iter = 0; iter < HELDOUT_ITERS; iter++){
+                for (int n = 0; n < words.length; n++){
+                    nd[z[n]]--;
+                    for (int k = 0; k < K; k++){
+                        p[k] = (nd[k] + alpha) * phi(words[n], k, Vbeta);
+                        if (k > 0) p[k] += p[k - 1];
+                    }
+                    double u = random.nextDouble() * p[K - 1];
+                    int topic = 0;
+                    while (topic < K - 1 && p[topic] <= u) topic++;
+                    z[n] = topic;
+                    nd[topic]++;
+                }
+            }
+
+            double norm = words.length + K * alpha;
+            for (int w : words){
+                double likelihood = 0.0;
+                for (int k = 0; k < K; k++){
+                    likelihood += (nd[k] + alpha) / norm * phi(w, k, Vbeta);
+                }
+                logLikelihood += Math.log(likelihood);
+            }
+            numTokens += words.length;
+        }
+
+        return (numTokens == 0)? Double.NaN : Math.exp(-logLikelihood / numTokens);
+    }
+
+    private double phi(int w, int k, double Vbeta)
+    {
+        return (model.nw.get(w, k) + model.beta) / (model.nwsum[k] + Vbeta);
+    }
+}
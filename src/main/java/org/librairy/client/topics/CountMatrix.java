@@ -0,0 +1,57 @@
+package org.librairy.client.topics;
+
+/**
+ * Matrix of non-negative counts (e.g. word-topic or document-topic assignments) stored in contiguous primitive
+ * arrays with row-major strides: a single one when it fits in a java array, several segments of rows otherwise.
+ */
+public abstract class CountMatrix extends SegmentedMatrix {
+
+    protected CountMatrix(int rows, int cols)
+    {
+        super(rows, cols);
+    }
+
+    /**
+     * @param maxSegmentSize maximum number of counts of a segment
+     */
+    protected CountMatrix(int rows, int cols, long maxSegmentSize)
+    {
+        super(rows, cols, maxSegmentSize);
+    }
+
+    /**
+     * Create a count matrix
+     * @param maxCount upper bound of any count, used to pick a compact representation
+     * @param compact allow 16-bit counts when maxCount is small enough
+     */
+    public static CountMatrix create(int rows, int cols, long maxCount, boolean compact)
+    {
+        if (compact && maxCount <= CharCountMatrix.MAX_COUNT){
+            return new CharCountMatrix(rows, cols);
+        }
+        return new IntCountMatrix(rows, cols);
+    }
+
+    public abstract int get(int row, int col);
+
+    public abstract void set(int row, int col, int value);
+
+    public abstract void increment(int row, int col);
+
+    public abstract void decrement(int row, int col);
+
+    /**
+     * Overwrite all counts with the ones of a matrix of the same type and dimensions
+     */
+    public abstract void copyFrom(CountMatrix other);
+
+    /**
+     * New matrix of the same type and dimensions with the same counts
+     */
+    public abstract CountMatrix copy();
+
+    /**
+     * Approximate heap size of the counts
+     */
+    public abstract long sizeInBytes();
+}
@@ -27,41 +27,135 @@
  */
 package org.librairy.client.topics;
 
-import gnu.trove.map.hash.TIntObjectHashMap;
-import gnu.trove.map.hash.TObjectIntHashMap;
 import org.librairy.client.services.FileService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
+/**
+ * Vocabulary of a corpus: words and their ids, assigned consecutively from 0.
+ *
+ * All words are stored as UTF-8 one after the other in a single buffer (on the heap, or memory-mapped when wrapped),
+ * indexed by an array of offsets, and found through an open-addressing hash table of ids. Words are looked up from
+ * any CharSequence or UTF-8 byte slice without allocating. Unpaired surrogates are stored as '?', as String.getBytes
+ * does, and words are looked up the same way.
+ */
 public class Dictionary {
 
     private static final Logger LOG = LoggerFactory.getLogger(Dictionary.class);
 
-    public TObjectIntHashMap<String> word2id;
-    public TIntObjectHashMap<String> id2word;
+    private static final int INITIAL_WORDS = 1024;
+
+    // UTF-8 bytes of the words, word w in [offsets[w], offsets[w + 1])
+    private ByteBuffer pool;
+    private int[] offsets;
+    private int size = 0;
+
+    // hash code of each word (as String.hashCode)
+    private int[] hashes;
+
+    // open addressing with linear probing: id + 1 of the word in each slot, 0 if empty
+    private int[] table;
 
     //--------------------------------------------------
     // constructors
     //--------------------------------------------------
 
     public Dictionary(){
-        word2id = new TObjectIntHashMap<String>();
-        id2word = new TIntObjectHashMap<String>();
+        this.pool       = ByteBuffer.allocate(16 * INITIAL_WORDS);
+        this.offsets    = new int[INITIAL_WORDS + 1];
+        this.hashes     = new int[INITIAL_WORDS];
+        this.table      = new int[2 * INITIAL_WORDS];
+    }
+
+    /**
+     * Dictionary of the words stored in a buffer, e.g. memory-mapped, without copying them. Adding words copies them to
+     * the heap.
+     * @param offsets size + 1 offsets of the words in the buffer, starting at 0
+     */
+    public static Dictionary wrap(ByteBuffer pool, int[] offsets, int size){
+        Dictionary dict = new Dictionary(pool, offsets, size);
+        for (int w = 0; w < size; w++){
+            dict.hashes[w] = dict.hash(w);
+        }
+        dict.rehash(tableCapacity(size));
+        return dict;
+    }
+
+    private Dictionary(ByteBuffer pool, int[] offsets, int size){
+        this.pool       = pool;
+        this.offsets    = offsets;
+        this.size       = size;
+        this.hashes     = new int[Math.max(size, 1)];
+    }
+
+    private static int tableCapacity(int size){
+        int capacity = 16;
+        while (capacity < 2 * size) capacity <<= 1;
+        return capacity;
     }
 
     //---------------------------------------------------
     // get/set methods
     //---------------------------------------------------
 
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Approximate heap used by this dictionary, not counting words stored off-heap or memory-mapped
+     */
+    public long sizeInBytes(){
+        long size = 4L * (offsets.length + hashes.length + table.length);
+        if (pool.hasArray()) size += pool.capacity();
+        return size;
+    }
+
+    /**
+     * word of an id, or null if there is no such id
+     */
     public String getWord(int id){
-        return id2word.get(id);
+        if (!contains(id)) return null;
+
+        byte[] bytes = new byte[offsets[id + 1] - offsets[id]];
+        for (int i = 0; i < bytes.length; i++){
+            bytes[i] = pool.get(offsets[id] + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
     }
 
-    public int getID(String word){
-        return word2id.get(word);
+    /**
+     * id of a word, or -1 if it is not in this dictionary
+     */
+    public int getID(CharSequence word){
+        int hash = hashCode(word);
+        int mask = table.length - 1;
+        for (int slot = spread(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask){
+            int id = table[slot] - 1;
+            if (hashes[id] == hash && equals(id, word)) return id;
+        }
+        return -1;
+    }
+
+    /**
+     * id of a word given as UTF-8 bytes, or -1 if it is not in this dictionary
+     */
+    public int getID(byte[] bytes, int offset, int length){
+        int hash = hashCode(bytes, offset, length);
+        int mask = table.length - 1;
+        for (int slot = spread(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask){
+            int id = table[slot] - 1;
+            if (hashes[id] == hash && equals(id, bytes, offset, length)) return id;
+        }
+        return -1;
     }
 
     //----------------------------------------------------
@@ -70,12 +164,12 @@ public class Dictionary {
     /**
      * check if this dictionary contains a specified word
      */
-    public boolean contains(String word){
-        return word2id.containsKey(word);
+    public boolean contains(CharSequence word){
+        return getID(word) >= 0;
     }
 
     public boolean contains(int id){
-        return id2word.containsKey(id);
+        return id >= 0 && id < size;
     }
     //---------------------------------------------------
     // manupulating methods
@@ -84,16 +178,218 @@ public class Dictionary {
      * add a word into this dictionary
      * return the corresponding id
      */
-    public int addWord(String word){
-        if (!contains(word)){
-            int id = word2id.size();
+    public int addWord(CharSequence word){
+        int id = getID(word);
+        return (id >= 0)? id : append(word);
+    }
+
+    /**
+     * add a word with the next id, even if it is already in this dictionary (it is then found by its first id)
+     */
+    private int append(CharSequence word){
+        if (size + 1 >= offsets.length) offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+        if (size >= hashes.length) hashes = Arrays.copyOf(hashes, 2 * hashes.length);
+        ensureCapacity(offsets[size] + 3 * word.length());
+
+        // encode as UTF-8, replacing unpaired surrogates as String.getBytes does
+        int position = offsets[size];
+        for (int i = 0; i < word.length(); i++){
+            char c = word.charAt(i);
+            if (c < 0x80){
+                pool.put(position++, (byte) c);
+            }
+            else if (c < 0x800){
+                pool.put(position++, (byte) (0xC0 | (c >> 6)));
+                pool.put(position++, (byte) (0x80 | (c & 0x3F)));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < word.length() && Character.isLowSurrogate(word.charAt(i + 1))){
+                int codePoint = Character.toCodePoint(c, word.charAt(++i));
+                pool.put(position++, (byte) (0xF0 | (codePoint >> 18)));
+                pool.put(position++, (byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                pool.put(position++, (byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                pool.put(position++, (byte) (0x80 | (codePoint & 0x3F)));
+            }
+            else if (Character.isSurrogate(c)){
+                pool.put(position++, (byte) '?');
+            }
+            else {
+                pool.put(position++, (byte) (0xE0 | (c >> 12)));
+                pool.put(position++, (byte) (0x80 | ((c >> 6) & 0x3F)));
+                pool.put(position++, (byte) (0x80 | (c & 0x3F)));
+            }
+        }
+
+        int id = size++;
+        offsets[size] = position;
+        hashes[id] = hash(id);
+
+        if (2 * size > table.length){
+            rehash(2 * table.length);
+        }
+        else {
+            insert(id);
+        }
+        return id;
+    }
+
+    private void ensureCapacity(int capacity){
+        if (capacity <= pool.capacity() && !pool.isReadOnly()) return;
+
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(capacity, 2 * pool.capacity()));
+        ByteBuffer bytes = pool.duplicate();
+        bytes.position(0).limit(offsets[size]);
+        bigger.put(bytes);
+        pool = bigger;
+    }
+
+    private void rehash(int capacity){
+        table = new int[capacity];
+        for (int id = 0; id < size; id++){
+            insert(id);
+        }
+    }
+
+    private void insert(int id){
+        int mask = table.length - 1;
+        int slot = spread(hashes[id]) & mask;
+        while (table[slot] != 0){
+            int other = table[slot] - 1;
+            if (hashes[other] == hashes[id] && equals(other, id)) return; // keep the first id of a word
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = id + 1;
+    }
+
+    //---------------------------------------------------
+    // hashing and comparison of UTF-8 words
+    //---------------------------------------------------
+
+    private static int spread(int hash){
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * UTF-16 unit of a word as it is stored, i.e. '?' for an unpaired surrogate
+     */
+    private static char stored(CharSequence word, int i){
+        char c = word.charAt(i);
+        if (!Character.isSurrogate(c)) return c;
+        if (Character.isHighSurrogate(c)) return (i + 1 < word.length() && Character.isLowSurrogate(word.charAt(i + 1)))? c : '?';
+        return (i > 0 && Character.isHighSurrogate(word.charAt(i - 1)))? c : '?';
+    }
+
+    /**
+     * hash code of a word as it is stored, the same as String.hashCode unless it has unpaired surrogates
+     */
+    private static int hashCode(CharSequence word){
+        int hash = 0;
+        for (int i = 0; i < word.length(); i++){
+            hash = 31 * hash + stored(word, i);
+        }
+        return hash;
+    }
 
-            word2id.put(word, id);
-            id2word.put(id,word);
+    /**
+     * hash code of the UTF-16 units of UTF-8 bytes, the same as the one of the decoded String
+     */
+    private static int hashCode(byte[] bytes, int offset, int length){
+        int hash = 0;
+        for (int i = offset, end = offset + length; i < end; ){
+            int b = bytes[i] & 0xFF;
+            int codePoint;
+            if (b < 0x80){
+                codePoint = b;
+                i += 1;
+            }
+            else if (b < 0xE0){
+                codePoint = ((b & 0x1F) << 6) | (bytes[i + 1] & 0x3F);
+                i += 2;
+            }
+            else if (b < 0xF0){
+                codePoint = ((b & 0x0F) << 12) | ((bytes[i + 1] & 0x3F) << 6) | (bytes[i + 2] & 0x3F);
+                i += 3;
+            }
+            else {
+                codePoint = ((b & 0x07) << 18) | ((bytes[i + 1] & 0x3F) << 12) | ((bytes[i + 2] & 0x3F) << 6) | (bytes[i + 3] & 0x3F);
+                i += 4;
+            }
 
-            return id;
+            if (codePoint < 0x10000){
+                hash = 31 * hash + codePoint;
+            }
+            else {
+                hash = 31 * hash + Character.highSurrogate(codePoint);
+                hash = 31 * hash + Character.lowSurrogate(codePoint);
+            }
         }
-        else return getID(word);		
+        return hash;
+    }
+
+    /**
+     * code point starting at a position of the pool
+     */
+    private int codePoint(int position){
+        int b = pool.get(position) & 0xFF;
+        if (b < 0x80) return b;
+        if (b < 0xE0) return ((b & 0x1F) << 6) | (pool.get(position + 1) & 0x3F);
+        if (b < 0xF0) return ((b & 0x0F) << 12) | ((pool.get(position + 1) & 0x3F) << 6) | (pool.get(position + 2) & 0x3F);
+        return ((b & 0x07) << 18) | ((pool.get(position + 1) & 0x3F) << 12) | ((pool.get(position + 2) & 0x3F) << 6) | (pool.get(position + 3) & 0x3F);
+    }
+
+    private static int utf8Length(int codePoint){
+        return (codePoint < 0x80)? 1 : (codePoint < 0x800)? 2 : (codePoint < 0x10000)? 3 : 4;
+    }
+
+    private int hash(int id){
+        int hash = 0;
+        for (int position = offsets[id]; position < offsets[id + 1]; ){
+            int codePoint = codePoint(position);
+            position += utf8Length(codePoint);
+
+            if (codePoint < 0x10000){
+                hash = 31 * hash + codePoint;
+            }
+            else {
+                hash = 31 * hash + Character.highSurrogate(codePoint);
+                hash = 31 * hash + Character.lowSurrogate(codePoint);
+            }
+        }
+        return hash;
+    }
+
+    private boolean equals(int id, CharSequence word){
+        int i = 0;
+        int length = word.length();
+        for (int position = offsets[id]; position < offsets[id + 1]; ){
+            int codePoint = codePoint(position);
+            position += utf8Length(codePoint);
+
+            if (codePoint < 0x10000){
+                if (i >= length || stored(word, i++) != codePoint) return false;
+            }
+            else {
+                if (i + 1 >= length || stored(word, i++) != Character.highSurrogate(codePoint)
+                        || stored(word, i++) != Character.lowSurrogate(codePoint)) return false;
+            }
+        }
+        return i == length;
+    }
+
+    private boolean equals(int id, byte[] bytes, int offset, int length){
+        if (offsets[id + 1] - offsets[id] != length) return false;
+        for (int i = 0; i < length; i++){
+            if (pool.get(offsets[id] + i) != bytes[offset + i]) return false;
+        }
+        return true;
+    }
+
+    private boolean equals(int id, int other){
+        int length = offsets[id + 1] - offsets[id];
+        if (offsets[other + 1] - offsets[other] != length) return false;
+        for (int i = 0; i < length; i++){
+            if (pool.get(offsets[id] + i) != pool.get(offsets[other] + i)) return false;
+        }
+        return true;
     }
 
     //---------------------------------------------------
@@ -109,10 +405,8 @@ public class Dictionary {
 
             String line;
 
-            for (int i = 0; (line = reader.readLine()) != null; i++) {
-                String word = line.trim();
-                id2word.put(i, word);
-                word2id.put(word, i);
+            while ((line = reader.readLine()) != null) {
+                append(line.trim());
             }
 
             reader.close();
@@ -131,8 +425,8 @@ public class Dictionary {
             BufferedWriter writer = FileService.writer(wordMapFile);
 
             //write word to id
-            for (int i = 0; i < id2word.size(); i++) {
-                writer.write(id2word.get(i) + "\n");
+            for (int i = 0; i < size; i++) {
+                writer.write(getWord(i) + "\n");
             }
 
             writer.close();
@@ -144,4 +438,22 @@ public class Dictionary {
             return false;
         }
     }
+
+    /**
+     * Write size + 1 offsets followed by the UTF-8 bytes of the words
+     */
+    public void write(DataOutputStream out) throws IOException
+    {
+        for (int w = 0; w <= size; w++){
+            out.writeInt(offsets[w]);
+        }
+        ByteBuffer bytes = pool.duplicate();
+        bytes.position(0).limit(offsets[size]);
+        byte[] buffer = new byte[1 << 16];
+        while (bytes.hasRemaining()){
+            int length = Math.min(buffer.length, bytes.remaining());
+            bytes.get(buffer, 0, length);
+            out.write(buffer, 0, length);
+        }
+    }
 }
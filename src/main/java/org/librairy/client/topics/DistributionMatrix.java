@@ -0,0 +1,48 @@
+package org.librairy.client.topics;
+
+/**
+ * Matrix of probability distributions (e.g. document-topic theta or topic-word phi), one distribution per row, stored
+ * in segments of rows as the count matrices.
+ */
+public abstract class DistributionMatrix extends SegmentedMatrix {
+
+    protected DistributionMatrix(int rows, int cols)
+    {
+        super(rows, cols);
+    }
+
+    /**
+     * Create a distribution matrix
+     * @param compact store single-precision values
+     */
+    public static DistributionMatrix create(int rows, int cols, boolean compact)
+    {
+        return compact? new FloatDistributionMatrix(rows, cols) : new DoubleDistributionMatrix(rows, cols);
+    }
+
+    public abstract double get(int row, int col);
+
+    public abstract void set(int row, int col, double value);
+
+    /**
+     * Copy a row into an array of length cols
+     */
+    public void getRow(int row, double[] values)
+    {
+        for (int col = 0; col < cols; col++){
+            values[col] = get(row, col);
+        }
+    }
+
+    public void setRow(int row, double[] values)
+    {
+        for (int col = 0; col < cols; col++){
+            set(row, col, values[col]);
+        }
+    }
+
+    /**
+     * Approximate heap size of the values
+     */
+    public abstract long sizeInBytes();
+}
@@ -0,0 +1,135 @@
+package org.librairy.client.topics;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Consecutive lines of a dataset tokenized with their own local vocabulary, so chunks can be processed in parallel.
+ *
+ * Local word ids follow the order of first occurrence within the chunk. Merging chunks in file order into a dictionary
+ * then assigns the same ids as reading the lines one by one.
+ */
+public class DocumentChunk {
+
+    final int first;                        // index of the first document of the chunk
+    final List<String> words = new ArrayList<String>(); // local vocabulary, by order of first occurrence
+    final TIntArrayList tokens = new TIntArrayList();   // local word ids of all documents
+    final TIntArrayList lengths = new TIntArrayList();  // number of tokens of each document
+    TIntObjectHashMap<TIntArrayList> labels = null;     // labels by document of the chunk
+    List<String> rawTexts = null;
+
+    private final TObjectIntHashMap<String> word2local = new TObjectIntHashMap<String>();
+
+    /**
+     * Tokenize lines of a dataset
+     * @param first index of the first document
+     * @param globalDict only words of this dictionary are kept, if not null
+     * @param keepRawText keep the text of each document
+     */
+    public DocumentChunk(List<String> lines, int first, boolean unlabeled, Dictionary globalDict, boolean keepRawText)
+    {
+        this(lines, first, unlabeled, (globalDict == null)? null : globalDict::contains, keepRawText);
+    }
+
+    /**
+     * Tokenize lines of a dataset
+     * @param first index of the first document
+     * @param filter only words accepted by this filter are kept, if not null
+     * @param keepRawText keep the text of each document
+     */
+    public DocumentChunk(List<String> lines, int first, boolean unlabeled, Predicate<String> filter, boolean keepRawText)
+    {
+        this.first = first;
+        if (keepRawText) rawTexts = new ArrayList<String>(lines.size());
+
+        for (String line : lines){
+            addLine(line, unlabeled, filter);
+        }
+    }
+
+    public int size()
+    {
+        return lengths.size();
+    }
+
+    private void addLine(String str, boolean unlabeled, Predicate<String> filter)
+    {
+        int doc = lengths.size();
+
+        // read document labels (if provided)
+        if (str.startsWith("[")) {
+            String[] labelsBoundary = str.
+                substring(1). // remove initial '['
+                split("]", 2); // separate labels and str between ']'
+            String[] labelStrs = labelsBoundary[0].trim().split("[ \\t]");
+            str = labelsBoundary[1].trim();
+
+            // parse labels (unless we're ignoring the labels)
+            if (!unlabeled) {
+                // store labels in a HashSet to ensure uniqueness
+                TIntHashSet label_set = new TIntHashSet();
+                for (String labelStr : labelStrs) {
+                    try {
+                        label_set.add(Integer.parseInt(labelStr.trim()));
+                    } catch (NumberFormatException nfe) {
+                        System.err.println("Unknown document label ( " + labelStr + " ) for document " + (first + doc) + ".");
+                    }
+                }
+                TIntArrayList docLabels = new TIntArrayList(label_set);
+                docLabels.sort();
+                if (labels == null) labels = new TIntObjectHashMap<TIntArrayList>();
+                labels.put(doc, docLabels);
+            }
+        }
+
+        // split on spaces, tabs and new lines, skipping blank words
+        int length = 0;
+        int start = 0;
+        int end = str.length();
+        for (int i = 0; i <= end; i++){
+            char c = (i < end)? str.charAt(i) : ' ';
+            if (c != ' ' && c != '\t' && c != '\n') continue;
+
+            if (!isBlank(str, start, i)){
+                String word = str.substring(start, i);
+                if (filter == null || filter.test(word)){
+                    tokens.add(localId(word));
+                    length++;
+                }
+            }
+            start = i + 1;
+        }
+
+        lengths.add(length);
+        if (rawTexts != null) rawTexts.add(str);
+    }
+
+    private int localId(String word)
+    {
+        // ids are stored plus one, as missing keys are 0
+        int id = word2local.get(word) - 1;
+        if (id < 0){
+            id = words.size();
+            word2local.put(word, id + 1);
+            words.add(word);
+        }
+        return id;
+    }
+
+    /**
+     * same as String.trim().isEmpty() on the substring
+     */
+    private static boolean isBlank(String str, int start, int end)
+    {
+        for (int i = start; i < end; i++){
+            if (str.charAt(i) > ' ') return false;
+        }
+        return true;
+    }
+}
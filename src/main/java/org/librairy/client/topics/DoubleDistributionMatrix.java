@@ -0,0 +1,42 @@
+package org.librairy.client.topics;
+
+/**
+ * Distribution matrix backed by double arrays
+ */
+public final class DoubleDistributionMatrix extends DistributionMatrix {
+
+    private final double[][] values;
+
+    public DoubleDistributionMatrix(int rows, int cols)
+    {
+        super(rows, cols);
+        this.values = new double[numSegments()][];
+        for (int i = 0; i < values.length; i++){
+            values[i] = new double[segmentSize(i)];
+        }
+    }
+
+    @Override
+    public double get(int row, int col)
+    {
+        return values[row >>> shift][(row & mask) * cols + col];
+    }
+
+    @Override
+    public void set(int row, int col, double value)
+    {
+        values[row >>> shift][(row & mask) * cols + col] = value;
+    }
+
+    @Override
+    public void getRow(int row, double[] values)
+    {
+        System.arraycopy(this.values[row >>> shift], (row & mask) * cols, values, 0, cols);
+    }
+
+    @Override
+    public long sizeInBytes()
+    {
+        return 8L * rows * cols;
+    }
+}
@@ -34,6 +34,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Estimator
 {
@@ -43,6 +45,8 @@ public class Estimator
     @Getter
     protected Model trnModel;
     LDACmdOption option;
+    private GibbsSampler sampler;
+    private final List<TrainingListener> listeners = new CopyOnWriteArrayList<>();
 
     public Estimator(LDACmdOption option) throws FileNotFoundException, IOException
     {
@@ -54,38 +58,95 @@ public class Estimator
             trnModel.init(true);
         }
         else if (option.estc){
-            trnModel.init(false);
+            trnModel.init(false, true);
         }
+
+        sampler = GibbsSampler.of(option.sampler, trnModel);
+    }
+
+    /**
+     * Estimate a model already initialized, e.g. with documents built in memory
+     */
+    public Estimator(LDACmdOption option, Model trnModel)
+    {
+        this.option = option;
+        this.trnModel = trnModel;
+
+        sampler = GibbsSampler.of(option.sampler, trnModel);
+    }
+
+    /**
+     * Notify the progress of the estimation to a listener
+     */
+    public void addListener(TrainingListener listener)
+    {
+        listeners.add(listener);
     }
 
     public void estimate()
     {
-        for (int startIter = ++trnModel.liter; trnModel.liter <= startIter - 1 + trnModel.niters; trnModel.liter++){
-            LOG.debug(String.valueOf(trnModel.liter));
-
-            // for all z_i
-            for (int m = 0; m < trnModel.M; m++){				
-                for (int n = 0; n < trnModel.data.docs.get(m).length; n++){
-                    // z_i = z[m][n]
-                    // sample from p(z_i|z_-i, w)
-                    int topic = sampling(m, n);
-                    trnModel.z[m].set(n, topic);
-                }// end for each word
-            }// end for each document
-
-            if ((trnModel.liter == startIter - 1 + trnModel.niters) ||
-                    (trnModel.liter > trnModel.nburnin && trnModel.liter % trnModel.samplingLag == 0)) {
-                trnModel.updateParams();
-            }
-
-            LOG.debug(("\b\b\b\b\b\b"));
-        }// end iterations
+        ParallelSweep parallelSweep = (option.nthreads > 1)? new ParallelSweep(trnModel, option.nthreads, option.sampler) : null;
+        Checkpointer checkpointer = Checkpointer.isEnabled(option)?
+                new Checkpointer(trnModel, option.checkpointIters, option.checkpointMinutes) : null;
+        if (option.est){
+            // checkpoints of a previous estimation
+            Checkpointer.clear(trnModel.dir, trnModel.modelName);
+        }
+
+        ConvergenceMonitor monitor = ConvergenceMonitor.isEnabled(option)? new ConvergenceMonitor(option, trnModel) : null;
+        boolean converged = false;
+
+        TrainingMonitor training = new TrainingMonitor(TrainingMetrics.ESTIMATION, trnModel, trnModel.niters, listeners);
+        training.start();
+        try {
+            for (int startIter = ++trnModel.liter; !converged && trnModel.liter <= startIter - 1 + trnModel.niters; trnModel.liter++){
+                training.iterationStarted();
+
+                if (parallelSweep != null){
+                    parallelSweep.sweep();
+                }
+                else {
+                    // for all z_i
+                    for (int m = 0; m < trnModel.M; m++){
+                        int offset = trnModel.data.offsets[m];
+                        for (int n = 0; n < trnModel.data.length(m); n++){
+                            // z_i = z[offset + n]
+                            // sample from p(z_i|z_-i, w)
+                            int topic = sampling(m, n);
+                            trnModel.z[offset + n] = topic;
+                        }// end for each word
+                    }// end for each document
+                }
+
+                converged = (monitor != null) && monitor.converged();
+
+                // the last sample is only stored if averaged with previous ones, else theta and phi are computed from the
+                // final counts when exported
+                boolean last = converged || (trnModel.liter == startIter - 1 + trnModel.niters);
+                if (last? trnModel.theta != null :
+                        (trnModel.liter > trnModel.nburnin && trnModel.liter % trnModel.samplingLag == 0)) {
+                    trnModel.updateParams();
+                }
+
+                if (checkpointer != null){
+                    checkpointer.iterationDone();
+                }
+
+                training.iterationDone((monitor != null)? monitor.getLogLikelihood() : Double.NaN);
+            }// end iterations
+        } finally {
+            if (parallelSweep != null) parallelSweep.shutdown();
+            if (checkpointer != null) checkpointer.close();
+            training.finish();
+        }
         trnModel.liter--;
 
 
 
         LOG.debug("\nSaving the final model!");
-        trnModel.saveModel();
+        if (trnModel.saveModel()){
+            Checkpointer.clear(trnModel.dir, trnModel.modelName);
+        }
     }
 
     /**
@@ -96,57 +157,6 @@ public class Estimator
      */
     public int sampling(int m, int n)
     {
-        // remove z_i from the count variable
-        int topic = trnModel.z[m].get(n);
-        int w = trnModel.data.docs.get(m).words[n];
-
-        trnModel.nw[w][topic] -= 1;
-        trnModel.nd[m][topic] -= 1;
-        trnModel.nwsum[topic] -= 1;
-        trnModel.ndsum[m] -= 1;
-
-        double Vbeta = trnModel.V * trnModel.beta;
-
-        // get labels for this document
-        int[] labels = trnModel.data.docs.get(m).labels;
-
-        // determine number of possible topics for this document
-        int K_m = (labels == null) ? trnModel.K : labels.length;
-
-        // do multinominal sampling via cumulative method
-        double[] p = trnModel.p;
-        for (int k = 0; k < K_m; k++) {
-            topic = labels == null ? k : labels[k];
-
-            p[k] = (trnModel.nd[m][topic] + trnModel.alpha) *
-                (trnModel.nw[w][topic] + trnModel.beta) /
-                (trnModel.nwsum[topic] + Vbeta);
-        }
-
-        // cumulate multinomial parameters
-        for (int k = 1; k < K_m; k++) {
-            p[k] += p[k - 1];
-        }
-
-        // scaled sample because of unnormalized p[]
-        double u = Math.random() * p[K_m - 1];
-
-        for (topic = 0; topic < K_m; topic++){
-            if (p[topic] > u) //sample topic w.r.t distribution p
-                break;
-        }
-
-        // map [0, K_m - 1] topic to [0, K - 1] topic according to labels
-        if (labels != null) {
-            topic = labels[topic];
-        }
-
-        // add newly estimated z_i to count variables
-        trnModel.nw[w][topic] += 1;
-        trnModel.nd[m][topic] += 1;
-        trnModel.nwsum[topic] += 1;
-        trnModel.ndsum[m] += 1;
-
-        return topic;
+        return sampler.sampling(m, n);
     }
 }
@@ -0,0 +1,49 @@
+package org.librairy.client.topics;
+
+/**
+ * Distribution matrix backed by float arrays
+ */
+public final class FloatDistributionMatrix extends DistributionMatrix {
+
+    private final float[][] values;
+
+    public FloatDistributionMatrix(int rows, int cols)
+    {
+        super(rows, cols);
+        this.values = new float[numSegments()][];
+        for (int i = 0; i < values.length; i++){
+            values[i] = new float[segmentSize(i)];
+        }
+    }
+
+    @Override
+    public double get(int row, int col)
+    {
+        return values[row >>> shift][(row & mask) * cols + col];
+    }
+
+    @Override
+    public void set(int row, int col, double value)
+    {
+        values[row >>> shift][(row & mask) * cols + col] = (float) value;
+    }
+
+    /**
+     * Array holding a row, from its base, to read the whole row in tight loops
+     */
+    float[] segment(int row)
+    {
+        return values[row >>> shift];
+    }
+
+    int base(int row)
+    {
+        return (row & mask) * cols;
+    }
+
+    @Override
+    public long sizeInBytes()
+    {
+        return 4L * rows * cols;
+    }
+}
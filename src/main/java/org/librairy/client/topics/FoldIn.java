@@ -0,0 +1,205 @@
+package org.librairy.client.topics;
+
+import java.util.Arrays;
+
+/**
+ * Inference of the topics of new documents against the fixed topic-word distributions of a trained model.
+ *
+ * The distributions are computed once from the trained counts, so sampling a document only reads them and updates the
+ * counts of that document. Documents are thus independent of each other. Two estimates of theta are available: "gibbs"
+ * averages the samples after burn-in and stops early once the average is stable, and "em" iterates deterministically
+ * the expected topic counts (with alpha as pseudo-counts) until theta is stable.
+ */
+public class FoldIn
+{
+    public static final String GIBBS    = "gibbs";
+    public static final String EM       = "em";
+
+    private final int K;
+    private final double alpha;
+    private final boolean em;
+    private final int niters;
+    private final int nburnin;
+    private final double tolerance;
+
+    private final TopicWordDistributions phi;
+
+    public FoldIn(Model trnModel, LDACmdOption option)
+    {
+        this.K          = trnModel.K;
+        this.alpha      = (option.alpha < 0.0)? trnModel.alpha : option.alpha;
+        this.em         = EM.equalsIgnoreCase(option.foldIn);
+        this.niters     = Math.max(option.niters, 1);
+        this.nburnin    = Math.min(option.nburnin, this.niters / 2);
+        this.tolerance  = option.foldInTolerance;
+
+        this.phi        = new TopicWordDistributions(trnModel, (option.beta < 0.0)? trnModel.beta : option.beta);
+    }
+
+    /**
+     * Array of the distributions of a word, from its base
+     */
+    private float[] segment(int w)
+    {
+        return phi.segment(w);
+    }
+
+    private int base(int w)
+    {
+        return phi.base(w);
+    }
+
+    /**
+     * Fixed topic-word distributions of the documents
+     */
+    public TopicWordDistributions distributions()
+    {
+        return phi;
+    }
+
+    public static boolean isEnabled(LDACmdOption option)
+    {
+        return option.foldIn != null && !option.foldIn.isEmpty();
+    }
+
+    /**
+     * Topic distribution of a document
+     * @param words ids of the words in the trained vocabulary
+     * @param labels topics allowed for the document, all if null
+     * @param z topic assigned to each word, written from the offset
+     */
+    public double[] theta(int[] words, int[] labels, int[] z, int offset, RandomNumberGenerator random)
+    {
+        int K_m = (labels == null)? K : labels.length;
+        double[] theta = new double[K];
+
+        if (words.length == 0){
+            for (int k = 0; k < K_m; k++){
+                theta[topic(labels, k)] = 1.0 / K_m;
+            }
+            return theta;
+        }
+
+        double[] estimate = em? em(words, labels, K_m) : gibbs(words, labels, K_m, z, offset, random);
+        for (int k = 0; k < K_m; k++){
+            theta[topic(labels, k)] = estimate[k];
+        }
+
+        if (em){
+            // most likely topic of each word
+            for (int n = 0; n < words.length; n++){
+                float[] segment = segment(words[n]);
+                int base = base(words[n]);
+                int best = 0;
+                for (int k = 1; k < K_m; k++){
+                    if (estimate[k] * segment[base + topic(labels, k)] > estimate[best] * segment[base + topic(labels, best)]) best = k;
+                }
+                z[offset + n] = topic(labels, best);
+            }
+        }
+        return theta;
+    }
+
+    private static int topic(int[] labels, int k)
+    {
+        return (labels == null)? k : labels[k];
+    }
+
+    /**
+     * Average of the samples after burn-in, over the allowed topics
+     */
+    private double[] gibbs(int[] words, int[] labels, int K_m, int[] z, int offset, RandomNumberGenerator random)
+    {
+        int length = words.length;
+        double norm = length + K_m * alpha;
+
+        // topics are indices of the allowed topics while sampling
+        int[] local = new int[length];
+        int[] nd = new int[K_m];
+        for (int n = 0; n < length; n++){
+            local[n] = random.nextInt(K_m);
+            nd[local[n]]++;
+        }
+
+        double[] p = new double[K_m];
+        double[] mean = new double[K_m];
+        int numSamples = 0;
+        for (int iter = 1; iter <= niters; iter++){
+            for (int n = 0; n < length; n++){
+                float[] segment = segment(words[n]);
+                int base = base(words[n]);
+                nd[local[n]]--;
+
+                for (int k = 0; k < K_m; k++){
+                    p[k] = (nd[k] + alpha) * segment[base + topic(labels, k)];
+                    if (k > 0) p[k] += p[k - 1];
+                }
+
+                double u = random.nextDouble() * p[K_m - 1];
+                int topic = 0;
+                while (topic < K_m - 1 && p[topic] <= u) topic++;
+
+                local[n] = topic;
+                nd[topic]++;
+            }
+
+            if (iter <= nburnin) continue;
+
+            // running mean of the samples
+            numSamples++;
+            double change = 0.0;
+            for (int k = 0; k < K_m; k++){
+                double delta = ((nd[k] + alpha) / norm - mean[k]) / numSamples;
+                mean[k] += delta;
+                change += Math.abs(delta);
+            }
+            if (numSamples > 1 && change < tolerance) break;
+        }
+
+        for (int n = 0; n < length; n++){
+            z[offset + n] = topic(labels, local[n]);
+        }
+        return mean;
+    }
+
+    /**
+     * Expectation-maximization of theta with fixed phi, over the allowed topics
+     */
+    private double[] em(int[] words, int[] labels, int K_m)
+    {
+        int length = words.length;
+        double norm = length + K_m * alpha;
+
+        double[] theta = new double[K_m];
+        for (int k = 0; k < K_m; k++){
+            theta[k] = 1.0 / K_m;
+        }
+
+        double[] r = new double[K_m];
+        double[] counts = new double[K_m];
+        for (int iter = 1; iter <= niters; iter++){
+            Arrays.fill(counts, 0.0);
+            for (int n = 0; n < length; n++){
+                float[] segment = segment(words[n]);
+                int base = base(words[n]);
+                double sum = 0.0;
+                for (int k = 0; k < K_m; k++){
+                    r[k] = theta[k] * segment[base + topic(labels, k)];
+                    sum += r[k];
+                }
+                for (int k = 0; k < K_m; k++){
+                    counts[k] += r[k] / sum;
+                }
+            }
+
+            double change = 0.0;
+            for (int k = 0; k < K_m; k++){
+                double value = (counts[k] + alpha) / norm;
+                change += Math.abs(value - theta[k]);
+                theta[k] = value;
+            }
+            if (change < tolerance) break;
+        }
+        return theta;
+    }
+}
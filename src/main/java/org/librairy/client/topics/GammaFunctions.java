@@ -0,0 +1,43 @@
+package org.librairy.client.topics;
+
+/**
+ * Gamma-related special functions
+ */
+public class GammaFunctions {
+
+    /**
+     * Digamma function, i.e. the derivative of log(Gamma(x)), for x > 0
+     */
+    public static double digamma(double x)
+    {
+        double result = 0.0;
+
+        // shift x to a value where the asymptotic expansion is accurate
+        while (x < 6.0){
+            result -= 1.0 / x;
+            x += 1.0;
+        }
+
+        double f = 1.0 / (x * x);
+        return result + Math.log(x) - 0.5 / x
+                - f * (1.0 / 12 - f * (1.0 / 120 - f * (1.0 / 252 - f * (1.0 / 240 - f * (1.0 / 132)))));
+    }
+
+    /**
+     * Logarithm of the gamma function, for x > 0
+     */
+    public static double logGamma(double x)
+    {
+        double result = 0.0;
+
+        // shift x to a value where Stirling's series is accurate
+        while (x < 7.0){
+            result -= Math.log(x);
+            x += 1.0;
+        }
+
+        double f = 1.0 / (x * x);
+        return result + (x - 0.5) * Math.log(x) - x + 0.5 * Math.log(2 * Math.PI)
+                + (1.0 / 12 - f * (1.0 / 360 - f * (1.0 / 1260 - f * (1.0 / 1680 - f * (1.0 / 1188))))) / x;
+    }
+}
@@ -0,0 +1,132 @@
+package org.librairy.client.topics;
+
+/**
+ * Collapsed Gibbs sampler over the counts of a training model.
+ *
+ * The word-topic counts (nw, nwsum) may be the model's own arrays or a private copy owned by a single worker thread,
+ * while the document-topic counts (nd, ndsum) are always read from the model since each document is only sampled
+ * by one thread.
+ */
+public class GibbsSampler {
+
+    public static final String DENSE    = "dense";
+    public static final String SPARSE   = "sparse";
+    public static final String ALIAS    = "alias";
+
+    protected final Model model;
+
+    protected final CountMatrix nw;
+    protected final int[] nwsum;
+
+    protected final RandomNumberGenerator random;
+
+    // temp variables for sampling
+    protected final double[] p;
+
+    public GibbsSampler(Model model)
+    {
+        this(model, model.nw, model.nwsum, model.random);
+    }
+
+    public GibbsSampler(Model model, CountMatrix nw, int[] nwsum, RandomNumberGenerator random)
+    {
+        this.model  = model;
+        this.nw     = nw;
+        this.nwsum  = nwsum;
+        this.random = random;
+        this.p      = new double[model.K];
+    }
+
+    /**
+     * Create a sampler of the given type over the word-topic counts
+     * @param type sampling engine: dense, sparse or alias
+     */
+    public static GibbsSampler of(String type, Model model, CountMatrix nw, int[] nwsum, RandomNumberGenerator random)
+    {
+        if (DENSE.equalsIgnoreCase(type)){
+            return new GibbsSampler(model, nw, nwsum, random);
+        }
+        else if (SPARSE.equalsIgnoreCase(type)){
+            return new SparseGibbsSampler(model, nw, nwsum, random);
+        }
+        else if (ALIAS.equalsIgnoreCase(type)){
+            return new AliasGibbsSampler(model, nw, nwsum, random);
+        }
+        throw new IllegalArgumentException("Unknown sampler: " + type);
+    }
+
+    public static GibbsSampler of(String type, Model model)
+    {
+        return of(type, model, model.nw, model.nwsum, model.random);
+    }
+
+    /**
+     * Refresh any state derived from the word-topic counts, e.g. after they were overwritten
+     */
+    public void reset()
+    {
+        // nothing cached by the dense sampler
+    }
+
+    /**
+     * Do sampling
+     * @param m document number
+     * @param n word number
+     * @return topic id
+     */
+    public int sampling(int m, int n)
+    {
+        // remove z_i from the count variable
+        int i = model.data.offsets[m] + n;
+        int topic = model.z[i];
+        int w = model.data.tokens[i];
+
+        nw.decrement(w, topic);
+        model.nd.decrement(m, topic);
+        nwsum[topic] -= 1;
+        model.ndsum[m] -= 1;
+
+        double Vbeta = model.V * model.beta;
+
+        // get labels for this document
+        int[] labels = model.data.getLabels(m);
+
+        // determine number of possible topics for this document
+        int K_m = (labels == null) ? model.K : labels.length;
+
+        // do multinominal sampling via cumulative method
+        for (int k = 0; k < K_m; k++) {
+            topic = labels == null ? k : labels[k];
+
+            p[k] = (model.nd.get(m, topic) + model.alpha) *
+                (nw.get(w, topic) + model.beta) /
+                (nwsum[topic] + Vbeta);
+        }
+
+        // cumulate multinomial parameters
+        for (int k = 1; k < K_m; k++) {
+            p[k] += p[k - 1];
+        }
+
+        // scaled sample because of unnormalized p[]
+        double u = random.nextDouble() * p[K_m - 1];
+
+        for (topic = 0; topic < K_m; topic++){
+            if (p[topic] > u) //sample topic w.r.t distribution p
+                break;
+        }
+
+        // map [0, K_m - 1] topic to [0, K - 1] topic according to labels
+        if (labels != null) {
+            topic = labels[topic];
+        }
+
+        // add newly estimated z_i to count variables
+        nw.increment(w, topic);
+        model.nd.increment(m, topic);
+        nwsum[topic] += 1;
+        model.ndsum[m] += 1;
+
+        return topic;
+    }
+}
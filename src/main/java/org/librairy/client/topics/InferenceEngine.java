@@ -0,0 +1,361 @@
+package org.librairy.client.topics;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thread-safe inference of topic distributions against a trained model loaded once.
+ *
+ * The counts of the trained model are only read, and every thread keeps its own state (topic assignments, document
+ * counts and document word-topic counts), so many documents can be inferred concurrently. Each document is sampled as
+ * with -infseparately, i.e. against the trained counts plus its own counts only, and its topic distribution is
+ * returned directly instead of being written to files.
+ */
+public class InferenceEngine
+{
+    private static final Logger LOG = LoggerFactory.getLogger(InferenceEngine.class);
+
+    private final Model trnModel;
+    private final int niters;
+    private final int nburnin;
+    private final int samplingLag;
+
+    // fixed topic-word distributions, if inferring with -foldin
+    private final FoldIn foldIn;
+
+    // parent of the random streams of every document, guarded by itself
+    private final RandomNumberGenerator random;
+
+    // topic-word distributions to score words: the fold-in ones, or computed on first use
+    private volatile TopicWordDistributions distributions;
+
+    // notified when the engine grows after being loaded
+    private volatile Runnable growthListener;
+
+    // state of the documents sampled by each thread, reused by its next documents
+    private final ThreadLocal<Scratch> scratch;
+
+    /**
+     * Private state of a document: topic assignments and local index of each token, document counts, and document
+     * word-topic counts of its distinct words
+     */
+    private static final class Scratch
+    {
+        final TIntIntHashMap distinct = new TIntIntHashMap();
+        final int[] nd;
+        final int[] nwsum;
+        final double[] p;
+        int[] words = new int[16];
+        int[] local = new int[16];
+        int[] z = new int[16];
+        int[] nw;
+
+        Scratch(int K)
+        {
+            nd      = new int[K];
+            nwsum   = new int[K];
+            p       = new double[K];
+            nw      = new int[16 * K];
+        }
+
+        /**
+         * Index the distinct words of a document and clear its counts
+         */
+        void reset(int[] document, int K)
+        {
+            if (local.length < document.length){
+                local   = new int[Math.max(document.length, 2 * local.length)];
+                z       = new int[local.length];
+            }
+
+            distinct.clear();
+            for (int n = 0; n < document.length; n++){
+                int w = document[n];
+                int i = distinct.size();
+                if (!distinct.containsKey(w)){
+                    if (i == words.length) words = Arrays.copyOf(words, 2 * i);
+                    distinct.put(w, i);
+                    words[i] = w;
+                }
+                local[n] = distinct.get(w);
+            }
+
+            int size = distinct.size() * K;
+            if (nw.length < size) nw = new int[Math.max(size, 2 * nw.length)];
+            Arrays.fill(nw, 0, size, 0);
+            Arrays.fill(nd, 0);
+            Arrays.fill(nwsum, 0);
+        }
+    }
+
+    /**
+     * Load a trained model (memory-mapped when saved in binary format)
+     */
+    public InferenceEngine(LDACmdOption option) throws IOException
+    {
+        this(load(option), option);
+    }
+
+    public InferenceEngine(Model trnModel, LDACmdOption option)
+    {
+        this(trnModel, option.niters, option.nburnin, option.samplingLag,
+                FoldIn.isEnabled(option)? new FoldIn(trnModel, option) : null);
+    }
+
+    public InferenceEngine(Model trnModel, int niters, int nburnin, int samplingLag)
+    {
+        this(trnModel, niters, nburnin, samplingLag, null);
+    }
+
+    private InferenceEngine(Model trnModel, int niters, int nburnin, int samplingLag, FoldIn foldIn)
+    {
+        this.trnModel       = trnModel;
+        this.niters         = Math.max(niters, 1);
+        this.nburnin        = nburnin;
+        this.samplingLag    = Math.max(samplingLag, 1);
+        this.foldIn         = foldIn;
+        this.distributions  = (foldIn != null)? foldIn.distributions() : null;
+        this.random         = trnModel.random.split();
+        this.scratch        = ThreadLocal.withInitial(() -> new Scratch(trnModel.K));
+    }
+
+    private static Model load(LDACmdOption option) throws IOException
+    {
+        LOG.info("Loading existing model ..");
+        Model model = new Model(option, null, false);
+        if (!model.initCounts()){
+            throw new IOException("Unable to load model " + option.modelName + " from " + option.dir);
+        }
+        return model;
+    }
+
+    public Model getModel()
+    {
+        return trnModel;
+    }
+
+    /**
+     * Memory used by this engine besides the trained model
+     */
+    public long sizeInBytes()
+    {
+        TopicWordDistributions distributions = this.distributions;
+        return (distributions != null)? distributions.sizeInBytes() : 0L;
+    }
+
+    /**
+     * Notify when the memory used by this engine grows, i.e. once the distributions to score words are computed
+     */
+    public void onGrowth(Runnable listener)
+    {
+        this.growthListener = listener;
+    }
+
+    /**
+     * Ids of the words of a document in the model vocabulary, skipping unknown words
+     * @param text document as a line of a dataset
+     */
+    public int[] words(String text)
+    {
+        Dictionary dict = trnModel.data.localDict;
+        DocumentChunk chunk = new DocumentChunk(Collections.singletonList(text), 0, true, dict, false);
+
+        int[] words = new int[chunk.tokens.size()];
+        for (int n = 0; n < words.length; n++){
+            words[n] = dict.getID(chunk.words.get(chunk.tokens.get(n)));
+        }
+        return words;
+    }
+
+    /**
+     * Ids of tokens in the model vocabulary, skipping unknown words
+     */
+    public int[] words(List<String> tokens)
+    {
+        Dictionary dict = trnModel.data.localDict;
+        return tokens.stream().filter(dict::contains).mapToInt(dict::getID).toArray();
+    }
+
+    public String word(int id)
+    {
+        return trnModel.data.localDict.getWord(id);
+    }
+
+    /**
+     * Ids of the most likely words of the model vocabulary given a topic distribution
+     */
+    public int[] topWords(double[] theta, int n)
+    {
+        return TopKSelector.select(distributions().probabilities(theta), n);
+    }
+
+    /**
+     * Probability of a word of the model vocabulary given a topic distribution, sum over topics of theta_k * phi_k,w
+     */
+    public double probability(double[] theta, int w)
+    {
+        return distributions().probability(theta, w);
+    }
+
+    /**
+     * Topic-word distributions, computed once from the trained counts unless inferring with -foldin
+     */
+    private TopicWordDistributions distributions()
+    {
+        TopicWordDistributions distributions = this.distributions;
+        if (distributions != null) return distributions;
+
+        boolean computed = false;
+        synchronized (this){
+            distributions = this.distributions;
+            if (distributions == null){
+                distributions = new TopicWordDistributions(trnModel);
+                this.distributions = distributions;
+                computed = true;
+            }
+        }
+
+        Runnable listener = growthListener;
+        if (computed && listener != null) listener.run();
+        return distributions;
+    }
+
+    /**
+     * Topic distribution of a document
+     * @param text document as a line of a dataset
+     */
+    public double[] inference(String text)
+    {
+        return inference(words(text));
+    }
+
+    /**
+     * Topic distribution of a document
+     * @param words ids of the words in the model vocabulary
+     */
+    public double[] inference(int[] words)
+    {
+        return inference(new int[][]{words})[0];
+    }
+
+    /**
+     * Topic distributions of a batch of documents, each sampled against the trained counts plus its own counts only.
+     *
+     * The batch is sampled with one random stream. The trained counts are read in place, and the state of each document
+     * is kept in scratch arrays of the calling thread, sized by the distinct words of the largest document seen so far
+     * and reused by its next documents.
+     * @param documents ids of the words of each document in the model vocabulary
+     */
+    public double[][] inference(int[][] documents)
+    {
+        RandomNumberGenerator random;
+        synchronized (this.random){
+            random = this.random.split();
+        }
+
+        double[][] thetas = new double[documents.length][];
+        Scratch scratch = this.scratch.get();
+        if (foldIn != null){
+            for (int d = 0; d < documents.length; d++){
+                if (scratch.z.length < documents[d].length) scratch.z = new int[Math.max(documents[d].length, 2 * scratch.z.length)];
+                thetas[d] = foldIn.theta(documents[d], null, scratch.z, 0, random);
+            }
+            return thetas;
+        }
+
+        for (int d = 0; d < documents.length; d++){
+            scratch.reset(documents[d], trnModel.K);
+            thetas[d] = sample(documents[d].length, scratch, random);
+        }
+        return thetas;
+    }
+
+    /**
+     * Gibbs sampling of a document, whose distinct words are indexed in the scratch state
+     */
+    private double[] sample(int length, Scratch scratch, RandomNumberGenerator random)
+    {
+        int K = trnModel.K;
+        double alpha = trnModel.alpha;
+        double beta = trnModel.beta;
+        double Vbeta = trnModel.V * beta;
+        double Kalpha = K * alpha;
+
+        CountMatrix trained = trnModel.nw;
+        int[] words = scratch.words;
+        int[] local = scratch.local;
+        int[] z = scratch.z;
+        int[] nd = scratch.nd;
+        int[] nw = scratch.nw;
+        int[] nwsum = scratch.nwsum;
+        double[] p = scratch.p;
+
+        double[] theta = new double[K];
+        if (length == 0){
+            for (int k = 0; k < K; k++){
+                theta[k] = 1.0 / K;
+            }
+            return theta;
+        }
+
+        for (int n = 0; n < length; n++){
+            int topic = random.nextInt(K);
+            z[n] = topic;
+            nd[topic]++;
+            nw[local[n] * K + topic]++;
+            nwsum[topic]++;
+        }
+
+        int numSamples = 0;
+        for (int iter = 1; iter <= niters; iter++){
+            for (int n = 0; n < length; n++){
+                int base = local[n] * K;
+                int w = words[local[n]];
+
+                // remove z_i from the count variables
+                int topic = z[n];
+                nd[topic]--;
+                nw[base + topic]--;
+                nwsum[topic]--;
+
+                // do multinomial sampling via cumulative method
+                for (int k = 0; k < K; k++){
+                    p[k] = (nd[k] + alpha) *
+                        (trained.get(w, k) + nw[base + k] + beta) /
+                        (trnModel.nwsum[k] + nwsum[k] + Vbeta);
+                    if (k > 0) p[k] += p[k - 1];
+                }
+
+                double u = random.nextDouble() * p[K - 1];
+                for (topic = 0; topic < K - 1; topic++){
+                    if (p[topic] > u)
+                        break;
+                }
+
+                // add newly estimated z_i to count variables
+                z[n] = topic;
+                nd[topic]++;
+                nw[base + topic]++;
+                nwsum[topic]++;
+            }
+
+            if ((iter == niters) || (iter > nburnin && iter % samplingLag == 0)){
+                for (int k = 0; k < K; k++){
+                    theta[k] += (nd[k] + alpha) / (length + Kalpha);
+                }
+                numSamples++;
+            }
+        }
+
+        for (int k = 0; k < K; k++){
+            theta[k] /= numSamples;
+        }
+        return theta;
+    }
+}
@@ -33,6 +33,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
 
 public class Inferencer
 {
@@ -45,6 +48,7 @@ public class Inferencer
     private LDACmdOption option;
 
     private Model newModel;
+    private final List<TrainingListener> listeners = new CopyOnWriteArrayList<>();
 
     //-----------------------------------------------------
     // Init method
@@ -54,31 +58,76 @@ public class Inferencer
         this.option = option;
 
         LOG.info("Loading existing model ..");
-        trnModel = new Model(option);
-        trnModel.init(false);
+        trnModel = new Model(option, null, false);
+        trnModel.initCounts();
 
         globalDict = trnModel.data.localDict;
     }
 
+    /**
+     * Infer with an already loaded model, only read so it can be shared by several inferencers
+     */
+    public Inferencer(LDACmdOption option, Model trnModel)
+    {
+        this.option = option;
+        this.trnModel = trnModel;
+
+        globalDict = trnModel.data.localDict;
+    }
+
+    /**
+     * Notify the progress of the inference to a listener
+     */
+    public void addListener(TrainingListener listener)
+    {
+        listeners.add(listener);
+    }
+
     //inference new model ~ getting data from a specified dataset
     public Model inference() throws FileNotFoundException, IOException
     {
         LOG.info("Filtering words by model vocabulary ..");
         newModel = new Model(option, trnModel);
         newModel.init(true);
-        newModel.initInf();
+        if (FoldIn.isEnabled(option)){
+            // a single pass over the documents
+            TrainingMonitor training = new TrainingMonitor(TrainingMetrics.INFERENCE, newModel, 1, listeners);
+            training.start();
+            try {
+                training.iterationStarted();
+                foldIn();
+                training.iterationDone(Double.NaN);
+            } finally {
+                training.finish();
+            }
+            return save();
+        }
+        if (option.infSeparately) newModel.initInf();
 
         LOG.info("Sampling " + newModel.niters + " iterations for inference!");
-        LOG.debug("Iteration");
+        TrainingMonitor training = new TrainingMonitor(TrainingMetrics.INFERENCE, newModel, newModel.niters, listeners);
+        training.start();
+        try {
+            sample(training);
+        } finally {
+            training.finish();
+        }
+
+        return save();
+    }
+
+    private void sample(TrainingMonitor training)
+    {
         for (newModel.liter = 1; newModel.liter <= newModel.niters; newModel.liter++){
-            LOG.debug(String.valueOf(newModel.liter));
+            training.iterationStarted();
 
             // for all newz_i
             for (int m = 0; m < newModel.M; ++m){
-                for (int n = 0; n < newModel.data.docs.get(m).length; n++){
+                int offset = newModel.data.offsets[m];
+                for (int n = 0; n < newModel.data.length(m); n++){
                     // sample from p(z_i|z_-1,w)
                     int topic = infSampling(m, n);
-                    newModel.z[m].set(n, topic);
+                    newModel.z[offset + n] = topic;
                 }
             }//end foreach new doc
 
@@ -87,10 +136,13 @@ public class Inferencer
                 newModel.updateParams(trnModel);
             }
 
-            LOG.debug(("\b\b\b\b\b\b"));
+            training.iterationDone(Double.NaN);
         }// end iterations
         newModel.liter--;
+    }
 
+    private Model save()
+    {
         LOG.debug("\nSaving the inference outputs!");
         String outputPrefix = newModel.dfile;
         if (outputPrefix.endsWith(".gz")) {
@@ -101,6 +153,42 @@ public class Inferencer
         return newModel;
     }
 
+    /**
+     * Infer the topics of every document separately, in parallel, against the fixed topic-word distributions of the
+     * trained model
+     */
+    private void foldIn()
+    {
+        LOG.info("Folding in " + newModel.M + " documents (" + option.foldIn + ")!");
+        FoldIn foldIn = new FoldIn(trnModel, option);
+
+        RandomNumberGenerator[] randoms = new RandomNumberGenerator[newModel.M];
+        for (int m = 0; m < newModel.M; m++){
+            randoms[m] = newModel.random.split();
+        }
+
+        LDADataset data = newModel.data;
+        newModel.theta = DistributionMatrix.create(newModel.M, newModel.K, newModel.compactParams);
+        newModel.phi = DistributionMatrix.create(newModel.K, newModel.V, newModel.compactParams);
+        IntStream.range(0, newModel.M).parallel().forEach(m -> {
+            int[] words = new int[data.length(m)];
+            for (int n = 0; n < words.length; n++){
+                words[n] = data.lid2gid[data.tokens[data.offsets[m] + n]];
+            }
+            newModel.theta.setRow(m, foldIn.theta(words, data.getLabels(m), newModel.z, data.offsets[m], randoms[m]));
+        });
+        newModel.recount();
+
+        for (int _w = 0; _w < newModel.V; _w++){
+            int w = data.lid2gid[_w];
+            if (w < 0) continue;
+            for (int k = 0; k < newModel.K; k++){
+                newModel.phi.set(k, _w, foldIn.distributions().phi(w, k));
+            }
+        }
+        newModel.liter = newModel.niters;
+    }
+
     /**
      * do sampling for inference
      * m: document number
@@ -109,26 +197,28 @@ public class Inferencer
     protected int infSampling(int m, int n)
     {
         // remove z_i from the count variables
-        int topic = newModel.z[m].get(n);
-        int _w = newModel.data.docs.get(m).words[n];
-        int w = newModel.data.lid2gid.get(_w);
+        int i = newModel.data.offsets[m] + n;
+        int topic = newModel.z[i];
+        int _w = newModel.data.tokens[i];
+        int w = newModel.data.lid2gid[_w];
 
-        newModel.nw[_w][topic] -= 1;
-        newModel.nd[m][topic] -= 1;
+        newModel.nw.decrement(_w, topic);
+        newModel.nd.decrement(m, topic);
         newModel.nwsum[topic] -= 1;
         newModel.ndsum[m] -= 1;
 
-        int[] nw_inf_m__w = null;
+        // topics of the other tokens of the word in the document
+        int[] wordCounts = newModel.wordCounts;
         if (option.infSeparately) {
-            nw_inf_m__w = newModel.nw_inf.get(m).get(_w);
-            nw_inf_m__w[topic] -= 1;
-            newModel.nwsum_inf[m][topic] -= 1;
+            for (int j = newModel.sameWord[i]; j != i; j = newModel.sameWord[j]){
+                wordCounts[newModel.z[j]] += 1;
+            }
         }
 
         double Vbeta = trnModel.V * newModel.beta;
 
         // get labels for this document
-        int[] labels = newModel.data.docs.get(m).labels;
+        int[] labels = newModel.data.getLabels(m);
 
         // determine number of possible topics for this document
         int K_m = (labels == null) ? newModel.K : labels.length;
@@ -140,15 +230,15 @@ public class Inferencer
 
             int nw_k, nwsum_k;
             if (option.infSeparately) {
-                nw_k = nw_inf_m__w[topic];
-                nwsum_k = newModel.nwsum_inf[m][topic];
+                nw_k = wordCounts[topic];
+                nwsum_k = newModel.nd.get(m, topic);
             } else {
-                nw_k = newModel.nw[_w][topic];
+                nw_k = newModel.nw.get(_w, topic);
                 nwsum_k = newModel.nwsum[topic];
             }
 
-            p[k] = (newModel.nd[m][topic] + newModel.alpha) *
-                (trnModel.nw[w][topic] + nw_k + newModel.beta) /
+            p[k] = (newModel.nd.get(m, topic) + newModel.alpha) *
+                (trnModel.nw.get(w, topic) + nw_k + newModel.beta) /
                 (trnModel.nwsum[topic] + nwsum_k + Vbeta);
         }
 
@@ -158,7 +248,7 @@ public class Inferencer
         }
 
         // scaled sample because of unnormalized p[]
-        double u = Math.random() * p[K_m - 1];
+        double u = newModel.random.nextDouble() * p[K_m - 1];
 
         for (topic = 0; topic < K_m; topic++){
             if (p[topic] > u)
@@ -171,14 +261,15 @@ public class Inferencer
         }
 
         // add newly estimated z_i to count variables
-        newModel.nw[_w][topic] += 1;
-        newModel.nd[m][topic] += 1;
+        newModel.nw.increment(_w, topic);
+        newModel.nd.increment(m, topic);
         newModel.nwsum[topic] += 1;
         newModel.ndsum[m] += 1;
 
         if (option.infSeparately) {
-            nw_inf_m__w[topic] += 1;
-            newModel.nwsum_inf[m][topic] += 1;
+            for (int j = newModel.sameWord[i]; j != i; j = newModel.sameWord[j]){
+                wordCounts[newModel.z[j]] = 0;
+            }
         }
 
         return topic;
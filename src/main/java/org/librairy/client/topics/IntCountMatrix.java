@@ -0,0 +1,65 @@
+package org.librairy.client.topics;
+
+/**
+ * Count matrix backed by int arrays
+ */
+public final class IntCountMatrix extends CountMatrix {
+
+    private final int[][] counts;
+
+    public IntCountMatrix(int rows, int cols)
+    {
+        super(rows, cols);
+        this.counts = new int[numSegments()][];
+        for (int i = 0; i < counts.length; i++){
+            counts[i] = new int[segmentSize(i)];
+        }
+    }
+
+    @Override
+    public int get(int row, int col)
+    {
+        return counts[row >>> shift][(row & mask) * cols + col];
+    }
+
+    @Override
+    public void set(int row, int col, int value)
+    {
+        counts[row >>> shift][(row & mask) * cols + col] = value;
+    }
+
+    @Override
+    public void increment(int row, int col)
+    {
+        counts[row >>> shift][(row & mask) * cols + col]++;
+    }
+
+    @Override
+    public void decrement(int row, int col)
+    {
+        counts[row >>> shift][(row & mask) * cols + col]--;
+    }
+
+    @Override
+    public void copyFrom(CountMatrix other)
+    {
+        int[][] source = ((IntCountMatrix) other).counts;
+        for (int i = 0; i < counts.length; i++){
+            System.arraycopy(source[i], 0, counts[i], 0, counts[i].length);
+        }
+    }
+
+    @Override
+    public CountMatrix copy()
+    {
+        IntCountMatrix matrix = new IntCountMatrix(rows, cols);
+        matrix.copyFrom(this);
+        return matrix;
+    }
+
+    @Override
+    public long sizeInBytes()
+    {
+        return 4L * rows * cols;
+    }
+}
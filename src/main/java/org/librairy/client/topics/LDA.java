@@ -54,7 +54,11 @@ public class LDA
 
             parser.parseArgument(args);
 
-            if (option.est || option.estc){
+            if (option.online && (option.est || option.estc)){
+                OnlineEstimator estimator = new OnlineEstimator(option);
+                estimator.estimate();
+            }
+            else if (option.est || option.estc){
                 Estimator estimator = new Estimator(option);
                 estimator.estimate();
             }
@@ -16,6 +16,12 @@ public class LDACmdOption {
     @Option(name="-infseparately", usage="Do inference for each document separately")
         public boolean infSeparately = false;
 
+    @Option(name="-foldin", usage="Infer with the fixed topic-word distributions of the model, each document separately: gibbs (average of samples) or em (deterministic)")
+        public String foldIn = "";
+
+    @Option(name="-foldintolerance", usage="Specify the change of theta below which fold-in inference stops early")
+        public double foldInTolerance = 0.001;
+
     @Option(name="-unlabeled", usage="Ignore document labels")
         public boolean unlabeled = false;
 
@@ -25,6 +31,15 @@ public class LDACmdOption {
     @Option(name="-dfile", usage="Specify data file (*.gz)")
         public String dfile = "";
 
+    @Option(name="-mindf", usage="Specify the minimum number of documents of a word kept in the vocabulary")
+        public int minDf = 1;
+
+    @Option(name="-maxdf", usage="Specify the maximum number of documents of a word kept in the vocabulary, as a fraction of the documents if not greater than 1")
+        public double maxDf = 1.0;
+
+    @Option(name="-maxvocab", usage="Specify the maximum number of words of the vocabulary, the most frequent in documents (0 for no limit)")
+        public int maxVocab = 0;
+
     @Option(name="-model", usage="Specify the model name")
         public String modelName = "";
 
@@ -48,4 +63,64 @@ public class LDACmdOption {
 
     @Option(name="-twords", usage="Specify the number of most likely words to be printed for each topic")
         public int twords = 100;
+
+    @Option(name="-nthreads", usage="Specify the number of threads used to sample documents in parallel")
+        public int nthreads = 1;
+
+    @Option(name="-sampler", usage="Specify the sampling engine: dense (default), sparse (hundreds of topics) or alias (thousands of topics)")
+        public String sampler = GibbsSampler.DENSE;
+
+    @Option(name="-compactcounts", usage="Store count matrices as 16-bit values when the corpus allows it")
+        public boolean compactCounts = false;
+
+    @Option(name="-compactparams", usage="Store the averaged theta and phi samples as single-precision values")
+        public boolean compactParams = false;
+
+    @Option(name="-seed", usage="Specify the seed of the random number generator (a random one by default)")
+        public long seed = -1;
+
+    @Option(name="-rng", usage="Specify the random number generator: splittable (default) or xoroshiro")
+        public String rng = RandomNumberGenerator.SPLITTABLE;
+
+    @Option(name="-modelformat", usage="Specify the format of the saved model: text (default), binary or both")
+        public String modelFormat = Model.TEXT;
+
+    @Option(name="-checkpointiters", usage="Save a checkpoint of the estimation every number of iterations (0 to disable)")
+        public int checkpointIters = 0;
+
+    @Option(name="-checkpointminutes", usage="Save a checkpoint of the estimation every number of minutes (0 to disable)")
+        public double checkpointMinutes = 0;
+
+    @Option(name="-llinterval", usage="Compute the log-likelihood every number of iterations, a full pass over the counts (0 to disable)")
+        public int llInterval = 0;
+
+    @Option(name="-heldout", usage="Specify a file of held-out documents (*.gz) to compute the perplexity")
+        public String heldout = "";
+
+    @Option(name="-convergence", usage="Stop when the relative improvement of the log-likelihood (or held-out perplexity) is below this threshold (0 to disable)")
+        public double convergence = 0;
+
+    @Option(name="-patience", usage="Specify the number of consecutive evaluations below the convergence threshold before stopping")
+        public int patience = 3;
+
+    @Option(name="-maxminutes", usage="Stop the estimation after this number of minutes (0 for no limit)")
+        public double maxMinutes = 0;
+
+    @Option(name="-online", usage="Estimate the model with online variational Bayes, reading documents in mini-batches")
+        public boolean online = false;
+
+    @Option(name="-batchsize", usage="Specify the number of documents of each mini-batch of the online model")
+        public int batchSize = 256;
+
+    @Option(name="-tau0", usage="Specify the delay that down-weights early mini-batches of the online model")
+        public double tau0 = 1024;
+
+    @Option(name="-kappa", usage="Specify the forgetting rate of the online model, in (0.5, 1]")
+        public double kappa = 0.7;
+
+    @Option(name="-npasses", usage="Specify the number of passes over the data file of the online model")
+        public int npasses = 1;
+
+    @Option(name="-ndocs", usage="Specify the expected number of documents of the online model (documents seen so far by default)")
+        public long ndocs = -1;
 }
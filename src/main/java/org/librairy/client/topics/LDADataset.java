@@ -28,8 +28,7 @@
 package org.librairy.client.topics;
 
 import gnu.trove.list.array.TIntArrayList;
-import gnu.trove.map.hash.TIntIntHashMap;
-import gnu.trove.set.hash.TIntHashSet;
+import gnu.trove.map.hash.TIntObjectHashMap;
 import org.librairy.client.services.FileService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,7 +36,16 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
 
 public class LDADataset {
 
@@ -47,17 +55,41 @@ public class LDADataset {
     // Instance Variables
     //---------------------------------------------------------------
 
+    // lines tokenized together when reading a dataset
+    private static final int CHUNK_SIZE = 1024;
+
+    // maximum length of a java array, i.e. of tokens and documents
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
     public Dictionary localDict = new Dictionary();			// local dictionary	
-    public ArrayList<Document> docs = new ArrayList<Document>(); 		// a list of documents	
     public int M = 0; 			 		// number of documents
     public int V = 0;			 		// number of words
 
-    // map from local coordinates (id) to global ones 
+    // documents in compressed sparse row form: the words of document m are
+    // tokens[offsets[m]] .. tokens[offsets[m + 1] - 1]
+    public int[] tokens = new int[1024];
+    public int[] offsets = new int[128];
+    public int numTokens = 0;
+
+    // labels of the labeled documents, null if there are none
+    public TIntObjectHashMap<int[]> labels = null;
+
+    // threads used to tokenize documents while reading a dataset
+    public int numThreads = 1;
+
+    // raw text of the documents, only kept if enabled before adding them
+    public boolean keepRawText = false;
+    public ArrayList<String> rawTexts = null;
+
+    // map from local coordinates (id) to global ones, -1 for words not in the global dictionary
     // null if the global dictionary is not set
-    public TIntIntHashMap lid2gid = null; 
+    public int[] lid2gid = null;
 
     //link to a global dictionary (optional), null for train data, not null for test data
-    public Dictionary globalDict = null;	 		
+    public Dictionary globalDict = null;
+
+    // vocabulary restricted by document frequency when reading a dataset, null to keep every word
+    public VocabularyPruner pruner = null;	 		
 
     //-------------------------------------------------------------
     //Public Instance Methods
@@ -69,84 +101,173 @@ public class LDADataset {
 
     public void setDictionary(Dictionary globalDict)
     {
-        lid2gid = new TIntIntHashMap();
+        lid2gid = new int[0];
         this.globalDict = globalDict;
     }
 
     /**
-     * set the document at the index idx if idx is greater than 0 and less than M
-     * @param doc document to be set
-     * @param idx index in the document array
-     */	
-    public void setDoc(Document doc, int idx){
-        if (idx < docs.size()) {
-            docs.set(idx, doc);
-        } else {
-            docs.add(idx, doc);
+     * number of words of a document
+     */
+    public int length(int m)
+    {
+        return offsets[m + 1] - offsets[m];
+    }
+
+    /**
+     * labels of a document, or null if it is not labeled
+     */
+    public int[] getLabels(int m)
+    {
+        return (labels == null)? null : labels.get(m);
+    }
+
+    /**
+     * raw text of a document, or an empty string if raw texts are not kept
+     */
+    public String getRawText(int m)
+    {
+        return (rawTexts == null)? "" : rawTexts.get(m);
+    }
+
+    /**
+     * copy of a document
+     */
+    public Document getDocument(int m)
+    {
+        TIntArrayList words = new TIntArrayList(length(m));
+        for (int i = offsets[m]; i < offsets[m + 1]; i++){
+            words.add(tokens[i]);
+        }
+        int[] docLabels = getLabels(m);
+        return new Document(words, getRawText(m), (docLabels == null)? null : new TIntArrayList(docLabels));
+    }
+
+    /**
+     * append a document
+     * @param words word ids
+     * @param docLabels labels (optional)
+     * @param rawStr raw text, only kept if enabled
+     */
+    public void addDoc(TIntArrayList words, TIntArrayList docLabels, String rawStr)
+    {
+        if (numTokens + (long) words.size() > tokens.length){
+            tokens = Arrays.copyOf(tokens, capacity(tokens.length, numTokens + (long) words.size(), "tokens"));
+        }
+        if (M + 2L > offsets.length){
+            offsets = Arrays.copyOf(offsets, capacity(offsets.length, M + 2L, "documents"));
+        }
+
+        for (int i = 0; i < words.size(); i++){
+            tokens[numTokens++] = words.get(i);
+        }
+
+        if (docLabels != null){
+            if (labels == null) labels = new TIntObjectHashMap<int[]>();
+            labels.put(M, docLabels.toArray());
+        }
+
+        if (keepRawText){
+            if (rawTexts == null) rawTexts = new ArrayList<String>();
+            rawTexts.add(rawStr);
         }
+
+        M++;
+        offsets[M] = numTokens;
     }
 
     /**
-     * add a new document
-     * @param str string contains doc
+     * capacity of an array grown to hold the required elements, doubled up to the maximum length of an array
      */
-    public void addDoc(String str, boolean unlabeled)
+    private static int capacity(int length, long required, String elements)
     {
-        // read document labels (if provided)
-        TIntArrayList labels = null;
-        if (str.startsWith("[")) {
-            String[] labelsBoundary = str.
-                substring(1). // remove initial '['
-                split("]", 2); // separate labels and str between ']'
-            String[] labelStrs = labelsBoundary[0].trim().split("[ \\t]");
-            str = labelsBoundary[1].trim();
-
-            // parse labels (unless we're ignoring the labels)
-            if (!unlabeled) {
-                // store labels in a HashSet to ensure uniqueness
-                TIntHashSet label_set = new TIntHashSet();
-                for (String labelStr : labelStrs) {
-                    try {
-                        label_set.add(Integer.parseInt(labelStr.trim()));
-                    } catch (NumberFormatException nfe) {
-                        System.err.println("Unknown document label ( " + labelStr + " ) for document " + docs.size() + ".");
-                    }
-                }
-                labels = new TIntArrayList(label_set);
-                labels.sort();
-            }
+        if (required > MAX_ARRAY_SIZE){
+            throw new IllegalStateException("Dataset too large: more than " + MAX_ARRAY_SIZE + " " + elements);
         }
+        return (int) Math.max(required, Math.min(2L * length, MAX_ARRAY_SIZE));
+    }
 
-        String[] words = str.split("[ \\t\\n]");
-        TIntArrayList ids = new TIntArrayList();
-        for (String word : words){
-            if (word.trim().equals("")) {
-                continue;
+    /**
+     * release the spare capacity of the arrays once all documents are added
+     */
+    public void trim()
+    {
+        tokens  = Arrays.copyOf(tokens, numTokens);
+        offsets = Arrays.copyOf(offsets, M + 1);
+        if (lid2gid != null) lid2gid = Arrays.copyOf(lid2gid, V);
+    }
+
+    /**
+     * remove from the vocabulary and the documents the words not kept, the other words keep their order
+     * @param keep whether each word is kept
+     */
+    public void retainWords(boolean[] keep)
+    {
+        Dictionary dict = new Dictionary();
+        int[] ids = new int[V];
+        for (int w = 0; w < V; w++){
+            ids[w] = keep[w]? dict.addWord(localDict.getWord(w)) : -1;
+            if (ids[w] >= 0 && lid2gid != null) lid2gid[ids[w]] = lid2gid[w];
+        }
+
+        int n = 0;
+        int start = 0;
+        for (int m = 0; m < M; m++){
+            int end = offsets[m + 1];
+            for (int i = start; i < end; i++){
+                int w = ids[tokens[i]];
+                if (w >= 0) tokens[n++] = w;
             }
+            start = end;
+            offsets[m + 1] = n;
+        }
 
-            int _id = localDict.word2id.size();
+        numTokens = n;
+        localDict = dict;
+        V = dict.size();
+        trim();
+    }
 
-            if (localDict.contains(word))		
-                _id = localDict.getID(word);
+    /**
+     * add a new document
+     * @param str string contains doc
+     */
+    public void addDoc(String str, boolean unlabeled)
+    {
+        addChunk(new DocumentChunk(Collections.singletonList(str), M, unlabeled, globalDict, keepRawText));
+    }
 
+    /**
+     * append the documents of a chunk, adding its words to the dictionary in order of first occurrence
+     */
+    public void addChunk(DocumentChunk chunk)
+    {
+        int[] ids = new int[chunk.words.size()];
+        for (int l = 0; l < ids.length; l++){
+            String word = chunk.words.get(l);
+            int _id = localDict.addWord(word);
             if (globalDict != null) {
-                //get the global id					
-                if (globalDict.contains(word)) {
-                    localDict.addWord(word);
-
-                    lid2gid.put(_id, globalDict.getID(word));
-                    ids.add(_id);
+                if (_id >= lid2gid.length){
+                    int length = lid2gid.length;
+                    lid2gid = Arrays.copyOf(lid2gid, Math.max(_id + 1, length * 2));
+                    Arrays.fill(lid2gid, length, lid2gid.length, -1);
                 }
+                lid2gid[_id] = globalDict.contains(word)? globalDict.getID(word) : -1;
             }
-            else {
-                localDict.addWord(word);
-                ids.add(_id);
-            }
+            ids[l] = _id;
         }
 
-        setDoc(new Document(ids, str, labels), docs.size());
+        int token = 0;
+        TIntArrayList words = new TIntArrayList();
+        for (int d = 0; d < chunk.size(); d++){
+            int length = chunk.lengths.get(d);
+            words.resetQuick();
+            for (int n = 0; n < length; n++){
+                words.add(ids[chunk.tokens.get(token++)]);
+            }
+            addDoc(words, (chunk.labels == null)? null : chunk.labels.get(d), (chunk.rawTexts == null)? null : chunk.rawTexts.get(d));
+        }
 
-        V = localDict.word2id.size();
+        V = localDict.size();
     }
 
     //---------------------------------------------------------------
@@ -159,23 +280,98 @@ public class LDADataset {
      */
     public boolean readDataSet(String filename, boolean unlabeled) throws FileNotFoundException, IOException
     {
+        long start = System.currentTimeMillis();
+        if (pruner != null) pruner.scan(filename, unlabeled);
+        Predicate<String> filter = filter();
         BufferedReader reader= FileService.reader(filename);
 
+        // this thread decompresses and merges chunks in order, workers tokenize them
+        ExecutorService executor = (numThreads > 1)? Executors.newFixedThreadPool(numThreads) : null;
+        ArrayDeque<Future<DocumentChunk>> pending = new ArrayDeque<Future<DocumentChunk>>();
+
         try {
+            List<String> lines = new ArrayList<String>(CHUNK_SIZE);
+            int first = 0;
             String line;
             while ((line = reader.readLine()) != null) {
-                addDoc(line, unlabeled);
+                lines.add(line);
+                if (lines.size() < CHUNK_SIZE) continue;
+
+                if (executor == null){
+                    addChunk(new DocumentChunk(lines, first, unlabeled, filter, keepRawText));
+                    lines.clear();
+                }
+                else {
+                    pending.add(submit(executor, lines, first, unlabeled, filter));
+                    lines = new ArrayList<String>(CHUNK_SIZE);
+
+                    // bound the chunks in memory
+                    while (pending.size() >= 2 * numThreads){
+                        addChunk(result(pending.poll()));
+                    }
+                }
+                first += CHUNK_SIZE;
+            }
+
+            if (!lines.isEmpty()){
+                if (executor == null) addChunk(new DocumentChunk(lines, first, unlabeled, filter, keepRawText));
+                else pending.add(submit(executor, lines, first, unlabeled, filter));
+            }
+            while (!pending.isEmpty()){
+                addChunk(result(pending.poll()));
+            }
+            trim();
+
+            if (pruner != null){
+                int words = V;
+                int total = numTokens;
+                retainWords(pruner.select(this));
+                LOG.info("Vocabulary pruned from " + words + " to " + V + " words, " + (total - numTokens) + " tokens removed");
             }
-            setM(docs.size());
 
             // debug output
+            double seconds = Math.max(System.currentTimeMillis() - start, 1) / 1000.0;
             LOG.info("Dataset loaded from " + filename + " : ");
             LOG.info("\tDocuments:" + M);
             LOG.info("\tVocabulary:" + V);
+            LOG.info("\tTokens:" + numTokens);
+            LOG.info("\tThroughput: " + Math.round(M / seconds) + " documents/s, " + Math.round(numTokens / seconds)
+                    + " tokens/s (" + seconds + "s, " + Math.max(numThreads, 1) + " threads)");
 
             return true;
         } finally {
             reader.close();
+            if (executor != null) executor.shutdownNow();
+        }
+    }
+
+    private Future<DocumentChunk> submit(ExecutorService executor, List<String> lines, int first, boolean unlabeled, Predicate<String> filter)
+    {
+        final boolean keep = keepRawText;
+        return executor.submit(() -> new DocumentChunk(lines, first, unlabeled, filter, keep));
+    }
+
+    /**
+     * words kept while reading a dataset: those of the global dictionary that may pass the pruning, all if null
+     */
+    private Predicate<String> filter()
+    {
+        final Dictionary dict = globalDict;
+        final VocabularyPruner candidates = pruner;
+        if (dict == null && candidates == null) return null;
+        return word -> (dict == null || dict.contains(word)) && (candidates == null || candidates.isCandidate(word));
+    }
+
+    private static DocumentChunk result(Future<DocumentChunk> future) throws IOException
+    {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading dataset", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IOException("Error while reading dataset", e.getCause());
         }
     }
 }
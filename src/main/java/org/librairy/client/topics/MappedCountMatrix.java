@@ -0,0 +1,77 @@
+package org.librairy.client.topics;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only count matrix memory-mapped from a file of big-endian int counts with row-major strides.
+ *
+ * Rows are mapped in segments of at most 1GB, so matrices larger than a single mapping are supported.
+ */
+public final class MappedCountMatrix extends CountMatrix {
+
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private final IntBuffer[] segments;
+
+    public MappedCountMatrix(FileChannel channel, long position, int rows, int cols) throws IOException
+    {
+        super(rows, cols, MAX_SEGMENT_BYTES / 4);
+
+        this.segments = new IntBuffer[numSegments()];
+        for (int i = 0; i < segments.length; i++){
+            long firstRow = (long) i << shift;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + firstRow * cols * 4L, segmentSize(i) * 4L).asIntBuffer();
+        }
+    }
+
+    @Override
+    public int get(int row, int col)
+    {
+        return segments[row >>> shift].get((row & mask) * cols + col);
+    }
+
+    @Override
+    public void set(int row, int col, int value)
+    {
+        throw new UnsupportedOperationException("Memory-mapped counts are read-only");
+    }
+
+    @Override
+    public void increment(int row, int col)
+    {
+        throw new UnsupportedOperationException("Memory-mapped counts are read-only");
+    }
+
+    @Override
+    public void decrement(int row, int col)
+    {
+        throw new UnsupportedOperationException("Memory-mapped counts are read-only");
+    }
+
+    @Override
+    public void copyFrom(CountMatrix other)
+    {
+        throw new UnsupportedOperationException("Memory-mapped counts are read-only");
+    }
+
+    @Override
+    public CountMatrix copy()
+    {
+        IntCountMatrix matrix = new IntCountMatrix(rows, cols);
+        for (int row = 0; row < rows; row++){
+            for (int col = 0; col < cols; col++){
+                matrix.set(row, col, get(row, col));
+            }
+        }
+        return matrix;
+    }
+
+    @Override
+    public long sizeInBytes()
+    {
+        // pages are owned by the OS page cache, not by the heap
+        return 0L;
+    }
+}
@@ -28,7 +28,6 @@
 package org.librairy.client.topics;
 
 import gnu.trove.list.array.TIntArrayList;
-import gnu.trove.map.hash.TIntObjectHashMap;
 import org.librairy.client.model.DataModel;
 import org.librairy.client.model.Shape;
 import org.librairy.client.model.Topic;
@@ -39,9 +38,11 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.StringTokenizer;
+import java.util.stream.IntStream;
 
 public class Model {
 
@@ -57,6 +58,12 @@ public class Model {
     public static String othersSuffix  = ".parameters.txt"; 	 // suffix for containing other parameters
     public static String twordsSuffix  = ".topics.txt";	 // suffix for file containing words-per-topics
     public static String wordMapSuffix  = ".vocabulary.txt"; // suffix for file containing word to id map
+    public static String binarySuffix   = ".bin";        // suffix for binary model file
+
+    // model formats
+    public static final String TEXT     = "text";
+    public static final String BINARY   = "binary";
+    public static final String BOTH     = "both";
 
     //---------------------------------------------------------------
     //	Model Parameters and Variables
@@ -80,24 +87,35 @@ public class Model {
     public int numSamples = 1; // number of samples taken
     public int liter = 0;      // the iteration at which the model was saved	
     public int twords = 20;    // print out top words per each topic
+    public boolean compactCounts = false; // store count matrices as 16-bit values when possible
+    public boolean compactParams = false; // store theta and phi as single-precision values
+    public String modelFormat = TEXT; // format of the saved model: text, binary or both
+    public long seed;          // seed of the random number generator
+    public RandomNumberGenerator random; // random number generator for sampling
 
-    // Estimated/Inferenced parameters
-    public double[][] theta = null; // theta: document - topic distributions, size M x K
-    public double[][] phi = null;   // phi: topic-word distributions, size K x V
+    // Estimated/Inferenced parameters, averaged over the samples taken
+    // null until a sample is taken: getTheta and getPhi then use the current counts
+    public DistributionMatrix theta = null; // theta: document - topic distributions, size M x K
+    public DistributionMatrix phi = null;   // phi: topic-word distributions, size K x V
 
     // Temp variables while sampling
-    public TIntArrayList[] z = null; // topic assignments for words, size M x doc.size()
-    protected int[][] nw = null;       // nw[i][j]: number of instances of word/term i assigned to topic j, size V x K
-    protected int[][] nd = null;       // nd[i][j]: number of words in document i assigned to topic j, size M x K
+    public int[] z = null; // topic assignments for words, aligned with data.tokens
+    protected CountMatrix nw = null;   // nw.get(i, j): number of instances of word/term i assigned to topic j, size V x K
+    protected CountMatrix nd = null;   // nd.get(i, j): number of words in document i assigned to topic j, size M x K
     protected int[] nwsum = null;      // nwsum[j]: total number of words assigned to topic j, size K
     protected int[] ndsum = null;      // ndsum[i]: total number of words in document i, size M
 
-    protected ArrayList<TIntObjectHashMap<int[]>> nw_inf = null;       // nw[m][i][j]: number of instances of word/term i assigned to topic j in doc m, size M x V x K
-    protected int[][] nwsum_inf = null;      // nwsum[m][j]: total number of words assigned to topic j in doc m, size M x K
+    protected int[] sameWord = null;   // sameWord[i]: next token of the same word in the same document (cyclic), for inference done separately
+    protected int[] wordCounts = null; // wordCounts[j]: number of the other tokens of the sampled word in its document assigned to topic j
 
     // temp variables for sampling
     protected double[] p = null; 
 
+    // log(Gamma(n + beta)) and log(Gamma(n + alpha)) of small counts, for the log-likelihood
+    private static final int LGAMMA_TABLE_SIZE = 1 << 12;
+    private double[] lgammaBeta = null;
+    private double[] lgammaAlpha = null;
+
     //---------------------------------------------------------------
     //	Constructors
     //---------------------------------------------------------------	
@@ -108,6 +126,11 @@ public class Model {
     }
 
     public Model(LDACmdOption option, Model trnModel) throws FileNotFoundException, IOException
+    {
+        this(option, trnModel, true);
+    }
+
+    protected Model(LDACmdOption option, Model trnModel, boolean readData) throws FileNotFoundException, IOException
     {
         modelName = option.modelName;
         K = option.K;
@@ -130,12 +153,25 @@ public class Model {
         dfile = option.dfile;
         unlabeled = option.unlabeled;
         twords = option.twords;
+        compactCounts = option.compactCounts;
+        compactParams = option.compactParams;
+        modelFormat = option.modelFormat;
+
+        seed = option.seed;
+        if (seed < 0)
+            seed = System.nanoTime() & Long.MAX_VALUE;
+        random = RandomNumberGenerator.of(option.rng, seed);
+        LOG.info("Random seed: " + seed);
 
         // initialize dataset
         data = new LDADataset();
+        data.numThreads = option.nthreads;
 
         // process trnModel (if given)
-        if (trnModel != null) {
+        if (trnModel == null) {
+            data.pruner = VocabularyPruner.of(option);
+        }
+        else {
             data.setDictionary(trnModel.data.localDict);
             K = trnModel.K;
 
@@ -147,6 +183,8 @@ public class Model {
         }
 
         // read in data
+        if (!readData)
+            return;
 
         String filePath = dir + File.separator + dfile;
         if (!new File(filePath).exists()){
@@ -163,13 +201,23 @@ public class Model {
      * Init parameters for estimation or inference
      */
     public boolean init(boolean random)
+    {
+        return init(random, false);
+    }
+
+    /**
+     * Init parameters for estimation or inference
+     * @param random assign random topics, else load the saved model
+     * @param resume load the newest checkpoint left by an interrupted estimation instead of the saved model, if any
+     */
+    public boolean init(boolean random, boolean resume)
     {
         if (random) {
             M = data.M;
             V = data.V;
-            z = new TIntArrayList[M];
+            z = new int[data.numTokens];
         } else {
-            if (!loadModel()) {
+            if (!loadModel(resume)) {
                 LOG.debug("Fail to load word-topic assignment file of the model!");
                 return false;
             }
@@ -188,94 +236,135 @@ public class Model {
         initSS();
 
         for (int m = 0; m < data.M; m++){
-            if (random) {
-                z[m] = new TIntArrayList();
-            }
-
             // initilize for z
-            int N = data.docs.get(m).length;
-            for (int n = 0; n < N; n++){
-                int w = data.docs.get(m).words[n];
+            for (int i = data.offsets[m]; i < data.offsets[m + 1]; i++){
+                int w = data.tokens[i];
                 int topic;
 
-                // random init a topic or load existing topic from z[m]
+                // random init a topic or load existing topic from z
                 if (random) {
-                    topic = (int)Math.floor(Math.random() * K);
-                    z[m].add(topic);
+                    topic = this.random.nextInt(K);
+                    z[i] = topic;
                 } else {
-                    topic = z[m].get(n);
+                    topic = z[i];
                 }
 
-                nw[w][topic]++; // number of instances of word assigned to topic j
-                nd[m][topic]++; // number of words in document i assigned to topic j
+                nw.increment(w, topic); // number of instances of word assigned to topic j
+                nd.increment(m, topic); // number of words in document i assigned to topic j
                 nwsum[topic]++; // total number of words assigned to topic j
             }
 
-            ndsum[m] = N; // total number of words in document i
+            ndsum[m] = data.length(m); // total number of words in document i
         }
 
-        theta = new double[M][K];		
-        phi = new double[K][V];
+        theta = null;
+        phi = null;
 
         return true;
     }
 
-    public boolean initInf()
+    /**
+     * Rebuild the count variables from the topic assignments
+     */
+    public void recount()
     {
-        nw_inf = new ArrayList<TIntObjectHashMap<int[]>>();
+        initSS();
 
-        nwsum_inf = new int[M][K];
-        for (int m = 0; m < M; m++) {
-            for (int k = 0; k < K; k++) {
-                nwsum_inf[m][k] = 0;
+        for (int m = 0; m < data.M; m++){
+            for (int i = data.offsets[m]; i < data.offsets[m + 1]; i++){
+                nw.increment(data.tokens[i], z[i]);
+                nd.increment(m, z[i]);
+                nwsum[z[i]]++;
             }
+            ndsum[m] = data.length(m);
+        }
+    }
+
+    /**
+     * Init the counts of a saved model for inference. The word-topic counts of a binary model are memory-mapped
+     * instead of rebuilt from the topic assignments.
+     */
+    public boolean initCounts()
+    {
+        String binaryFile = dir + File.separator + modelName + binarySuffix;
+        if (!useBinaryModel(binaryFile) || !BinaryModelFile.read(this, binaryFile, false)) {
+            return init(false);
         }
 
+        LOG.debug("Binary model mapped:");
+        LOG.debug("\tK:" + K);
+        LOG.debug("\tV:" + V);
+
+        p = new double[K];
+        return true;
+    }
+
+    /**
+     * Init the counts of each document for inference done separately. The number of instances of a word assigned to a
+     * topic in a document are the topics of the other tokens of that word in the document, linked to each other, and
+     * the total number of words assigned to a topic in a document is nd.
+     */
+    public boolean initInf()
+    {
+        sameWord = new int[data.numTokens];
+        wordCounts = new int[K];
+
+        // last token of each word in the current document
+        int[] last = new int[V];
+        int[] first = new int[V];
+        Arrays.fill(last, -1);
+
         for (int m = 0; m < data.M; m++){
-            nw_inf.add(m, new TIntObjectHashMap<int[]>());
+            for (int i = data.offsets[m]; i < data.offsets[m + 1]; i++){
+                int w = data.tokens[i];
+                if (last[w] < 0) first[w] = i;
+                else sameWord[last[w]] = i;
+                last[w] = i;
+            }
 
-            // initilize for z
-            int N = data.docs.get(m).length;
-            for (int n = 0; n < N; n++){
-                int w = data.docs.get(m).words[n];
-                int topic = z[m].get(n);
-
-                if (!nw_inf.get(m).containsKey(w)) {
-                    int[] nw_inf_m_w = new int[K];
-                    for (int k = 0; k < K; k++) {
-                        nw_inf_m_w[k] = 0;
-                    }
-                    nw_inf.get(m).put(w, nw_inf_m_w);
+            // close the cycles
+            for (int i = data.offsets[m]; i < data.offsets[m + 1]; i++){
+                int w = data.tokens[i];
+                if (last[w] >= 0){
+                    sameWord[last[w]] = first[w];
+                    last[w] = -1;
                 }
-
-                nw_inf.get(m).get(w)[topic]++; // number of instances of word assigned to topic j in doc m
-                //nw_inf[m][w][topic]++; // number of instances of word assigned to topic j in doc m
-                nwsum_inf[m][topic]++; // total number of words assigned to topic j in doc m
             }
         }
 
         return true;
     }
 
+    /**
+     * Memory used by the count variables
+     */
+    public long countsSizeInBytes()
+    {
+        long size = 4L * ((nwsum == null)? 0 : nwsum.length) + 4L * ((ndsum == null)? 0 : ndsum.length);
+        if (nw != null) size += nw.sizeInBytes();
+        if (nd != null) size += nd.sizeInBytes();
+        return size;
+    }
+
     /**
      * Init sufficient stats
      */
     protected void initSS()
     {
-        nw = new int[V][K];
-        for (int w = 0; w < V; w++){
-            for (int k = 0; k < K; k++){
-                nw[w][k] = 0;
-            }
+        // upper bounds of the counts: frequency of the most common word and length of the longest document
+        int[] frequencies = new int[V];
+        int maxWordFreq = 0;
+        int maxDocLength = 0;
+        for (int i = 0; i < data.numTokens; i++){
+            maxWordFreq = Math.max(maxWordFreq, ++frequencies[data.tokens[i]]);
         }
-
-        nd = new int[M][K];
-        for (int m = 0; m < M; m++){
-            for (int k = 0; k < K; k++){
-                nd[m][k] = 0;
-            }
+        for (int m = 0; m < data.M; m++){
+            maxDocLength = Math.max(maxDocLength, data.length(m));
         }
 
+        nw = CountMatrix.create(V, K, maxWordFreq, compactCounts);
+        nd = CountMatrix.create(M, K, maxDocLength, compactCounts);
+
         nwsum = new int[K];
         for (int k = 0; k < K; k++){
             nwsum[k] = 0;
@@ -306,43 +395,170 @@ public class Model {
 
     public void updateTheta()
     {
+        if (theta == null) theta = DistributionMatrix.create(M, K, compactParams);
+
         double Kalpha = K * alpha;
-        for (int m = 0; m < M; m++) {
+        IntStream.range(0, M).parallel().forEach(m -> {
             for (int k = 0; k < K; k++) {
-                if (numSamples > 1) theta[m][k] *= numSamples - 1; // convert from mean to sum
-                theta[m][k] += (nd[m][k] + alpha) / (ndsum[m] + Kalpha);
-                if (numSamples > 1) theta[m][k] /= numSamples; // convert from sum to mean
+                double value = (nd.get(m, k) + alpha) / (ndsum[m] + Kalpha);
+                if (numSamples > 1) value = (theta.get(m, k) * (numSamples - 1) + value) / numSamples; // running mean
+                theta.set(m, k, value);
             }
-        }
+        });
     }
 
     public void updatePhi()
     {
+        if (phi == null) phi = DistributionMatrix.create(K, V, compactParams);
+
         double Vbeta = V * beta;
-        for (int k = 0; k < K; k++) {
+        IntStream.range(0, K).parallel().forEach(k -> {
             for (int w = 0; w < V; w++) {
-                if (numSamples > 1) phi[k][w] *= numSamples - 1; // convert from mean to sum
-                phi[k][w] += (nw[w][k] + beta) / (nwsum[k] + Vbeta);
-                if (numSamples > 1) phi[k][w] /= numSamples; // convert from sum to mean
+                double value = (nw.get(w, k) + beta) / (nwsum[k] + Vbeta);
+                if (numSamples > 1) value = (phi.get(k, w) * (numSamples - 1) + value) / numSamples; // running mean
+                phi.set(k, w, value);
             }
-        }
+        });
     }
 
     // for inference
     public void updatePhi(Model trnModel)
     {
+        if (phi == null) phi = DistributionMatrix.create(K, V, compactParams);
+
         double Vbeta = trnModel.V * beta;
-        for (int k = 0; k < K; k++) {
+        int[] lid2gid = data.lid2gid;
+        IntStream.range(0, K).parallel().forEach(k -> {
             for (int _w = 0; _w < V; _w++) {
-                if (data.lid2gid.containsKey(_w)) {
-                    int id = data.lid2gid.get(_w);
+                int id = lid2gid[_w];
+                if (id < 0) continue; // ignore words that don't appear in training
 
-                    if (numSamples > 1) phi[k][_w] *= numSamples - 1; // convert from mean to sum
-                    phi[k][_w] += (trnModel.nw[id][k] + nw[_w][k] + beta) / (trnModel.nwsum[k] + nwsum[k] + Vbeta);
-                    if (numSamples > 1) phi[k][_w] /= numSamples; // convert from sum to mean
-                } // else ignore words that don't appear in training
+                double value = (trnModel.nw.get(id, k) + nw.get(_w, k) + beta) / (trnModel.nwsum[k] + nwsum[k] + Vbeta);
+                if (numSamples > 1) value = (phi.get(k, _w) * (numSamples - 1) + value) / numSamples; // running mean
+                phi.set(k, _w, value);
             } //end foreach word
-        } // end foreach topic
+        }); // end foreach topic
+    }
+
+    /**
+     * Topic distribution of a document: the average of the samples taken, or else computed from the current counts
+     */
+    public double[] getTheta(int m)
+    {
+        double[] row = new double[K];
+        if (theta != null) {
+            theta.getRow(m, row);
+            return row;
+        }
+
+        double Kalpha = K * alpha;
+        for (int k = 0; k < K; k++) {
+            row[k] = (nd.get(m, k) + alpha) / (ndsum[m] + Kalpha);
+        }
+        return row;
+    }
+
+    /**
+     * Word distribution of a topic: the average of the samples taken, or else computed from the current counts
+     */
+    public double[] getPhi(int k)
+    {
+        double[] row = new double[V];
+        if (phi != null) {
+            phi.getRow(k, row);
+            return row;
+        }
+
+        double Vbeta = V * beta;
+        for (int w = 0; w < V; w++) {
+            row[w] = (nw.get(w, k) + beta) / (nwsum[k] + Vbeta);
+        }
+        return row;
+    }
+
+    /**
+     * Most likely words of each topic, with their probabilities in scores, computing the rows of phi in parallel
+     */
+    private int[][] topWords(int n, double[][] scores)
+    {
+        int[][] topWords = new int[K][];
+        IntStream.range(0, K).parallel().forEach(k -> {
+            double[] row = getPhi(k);
+            topWords[k] = TopKSelector.select(row, n);
+            scores[k] = new double[topWords[k].length];
+            for (int i = 0; i < topWords[k].length; i++) {
+                scores[k][i] = row[topWords[k][i]];
+            }
+        });
+        return topWords;
+    }
+
+    /**
+     * Log-likelihood of the words and topic assignments, log p(w, z), with theta and phi integrated out.
+     *
+     * It is a full pass over the counts rather than kept up to date while sampling, which would add log-gamma terms to
+     * every token sampled: evaluate it every few tens of iterations at most. Only non-zero counts add to the sums, and
+     * the rows are summed in parallel and then added up in order, so the result does not depend on the threads.
+     */
+    public double logLikelihood()
+    {
+        if (lgammaBeta == null){
+            lgammaBeta  = logGammaTable(beta);
+            lgammaAlpha = logGammaTable(alpha);
+        }
+        double Vbeta = V * beta;
+        double Kalpha = K * alpha;
+
+        // log p(w|z)
+        double[] words = new double[V];
+        IntStream.range(0, V).parallel().forEach(w -> words[w] = logGammaRatios(nw, w, beta, lgammaBeta));
+        double ll = K * GammaFunctions.logGamma(Vbeta);
+        for (int w = 0; w < V; w++){
+            ll += words[w];
+        }
+        for (int k = 0; k < K; k++){
+            ll -= GammaFunctions.logGamma(nwsum[k] + Vbeta);
+        }
+
+        // log p(z)
+        double[] docs = new double[M];
+        IntStream.range(0, M).parallel().forEach(m -> docs[m] = logGammaRatios(nd, m, alpha, lgammaAlpha));
+        ll += M * GammaFunctions.logGamma(Kalpha);
+        for (int m = 0; m < M; m++){
+            ll += docs[m] - GammaFunctions.logGamma(ndsum[m] + Kalpha);
+        }
+
+        return ll;
+    }
+
+    /**
+     * Sum of log(Gamma(n + offset) / Gamma(offset)) over the non-zero counts of a row
+     */
+    private double logGammaRatios(CountMatrix counts, int row, double offset, double[] table)
+    {
+        double sum = 0.0;
+        for (int k = 0; k < K; k++){
+            int count = counts.get(row, k);
+            if (count > 0) sum += logGamma(count, offset, table) - table[0];
+        }
+        return sum;
+    }
+
+    /**
+     * log(Gamma(n + offset)) of small counts
+     */
+    private static double[] logGammaTable(double offset)
+    {
+        double[] table = new double[LGAMMA_TABLE_SIZE];
+        for (int n = 0; n < table.length; n++){
+            table[n] = GammaFunctions.logGamma(n + offset);
+        }
+        return table;
+    }
+
+    private static double logGamma(int count, double offset, double[] table)
+    {
+        return (count < table.length)? table[count] : GammaFunctions.logGamma(count + offset);
     }
 
     //---------------------------------------------------------------
@@ -364,11 +580,13 @@ public class Model {
             baseDir = modelPrefix;
         }
 
-        if (!saveModelTAssign(baseDir + modelName + tassignSuffix)) {
+        boolean text = !BINARY.equalsIgnoreCase(modelFormat);
+
+        if (text && !saveModelTAssign(baseDir + modelName + tassignSuffix)) {
             return false;
         }
 
-        if (!saveModelOthers(baseDir + modelName + othersSuffix)) {
+        if (text && !saveModelOthers(baseDir + modelName + othersSuffix)) {
             return false;
         }
 
@@ -386,10 +604,17 @@ public class Model {
             }
         }
 
-        if (!data.localDict.writeWordMap(baseDir + modelName + wordMapSuffix)) {
+        if (text && !data.localDict.writeWordMap(baseDir + modelName + wordMapSuffix)) {
             return false;
         }
 
+        // written last, so it is not older than the text model when both are saved (see useBinaryModel)
+        if (!TEXT.equalsIgnoreCase(modelFormat)) {
+            if (!BinaryModelFile.write(this, baseDir + modelName + binarySuffix)) {
+                return false;
+            }
+        }
+
         return true;
     }
 
@@ -403,8 +628,8 @@ public class Model {
             BufferedWriter writer = FileService.writer(filename);
 
             for (i = 0; i < data.M; i++) {
-                for (j = 0; j < data.docs.get(i).length; ++j) {
-                    writer.write(data.docs.get(i).words[j] + ":" + z[i].get(j) + " ");
+                for (j = data.offsets[i]; j < data.offsets[i + 1]; ++j) {
+                    writer.write(data.tokens[j] + ":" + z[j] + " ");
                 }
                 writer.write("\n");
             }
@@ -427,9 +652,10 @@ public class Model {
             BufferedWriter writer = FileService.writer(filename);
 
             for (int i = 0; i < M; i++) {
+                double[] row = getTheta(i);
                 for (int j = 0; j < K; j++) {
-                    if (theta[i][j] > 0) {
-                        writer.write(j + ":" + theta[i][j] + " ");
+                    if (row[j] > 0) {
+                        writer.write(j + ":" + row[j] + " ");
                     }
                 }
                 writer.write("\n");
@@ -453,9 +679,10 @@ public class Model {
             BufferedWriter writer = FileService.writer(filename);
 
             for (int i = 0; i < K; i++) {
+                double[] row = getPhi(i);
                 for (int j = 0; j < V; j++) {
-                    if (phi[i][j] > 0) {
-                        writer.write(j + ":" + phi[i][j] + " ");
+                    if (row[j] > 0) {
+                        writer.write(j + ":" + row[j] + " ");
                     }
                 }
                 writer.write("\n");
@@ -505,23 +732,18 @@ public class Model {
                 twords = V;
             }
 
+            double[][] scores = new double[K][];
+            int[][] topWords = topWords(twords, scores);
             for (int k = 0; k < K; k++){
-                ArrayList<Pair> wordsProbsList = new ArrayList<Pair>(); 
-                for (int w = 0; w < V; w++){
-                    Pair p = new Pair(w, phi[k][w], false);
-
-                    wordsProbsList.add(p);
-                }//end foreach word
-
                 //print topic				
                 writer.write("Topic " + k + ":\n");
-                Collections.sort(wordsProbsList);
 
-                for (int i = 0; i < twords; i++){
-                    if (data.localDict.contains((Integer)wordsProbsList.get(i).first)){
-                        String word = data.localDict.getWord((Integer)wordsProbsList.get(i).first);
+                for (int i = 0; i < topWords[k].length; i++){
+                    int w = topWords[k][i];
+                    if (data.localDict.contains(w)){
+                        String word = data.localDict.getWord(w);
 
-                        writer.write("\t" + word + "\t" + wordsProbsList.get(i).second + "\n");
+                        writer.write("\t" + word + "\t" + scores[k][i] + "\n");
                     }
                 }
             } //end foreach topic			
@@ -544,25 +766,20 @@ public class Model {
             twords = V;
         }
 
+        double[][] scores = new double[K][];
+        int[][] topWords = topWords(twords, scores);
         for (int k = 0; k < K; k++){
             Topic dataTopic = new Topic();
             dataTopic.setId(String.valueOf(k));
-            ArrayList<Pair> wordsProbsList = new ArrayList<Pair>();
-            for (int w = 0; w < V; w++){
-                Pair p = new Pair(w, phi[k][w], false);
-
-                wordsProbsList.add(p);
-            }//end foreach word
 
-            Collections.sort(wordsProbsList);
-
-            for (int i = 0; i < twords; i++){
-                if (data.localDict.contains((Integer)wordsProbsList.get(i).first)){
-                    String word = data.localDict.getWord((Integer)wordsProbsList.get(i).first);
+            for (int i = 0; i < topWords[k].length; i++){
+                int w = topWords[k][i];
+                if (data.localDict.contains(w)){
+                    String word = data.localDict.getWord(w);
 
                     Word dataWord = new Word();
                     dataWord.setValue(word);
-                    dataWord.setScore(Double.valueOf(String.valueOf(wordsProbsList.get(i).second)));
+                    dataWord.setScore(scores[k][i]);
 
                     dataTopic.add(dataWord);
                 }
@@ -578,10 +795,11 @@ public class Model {
             Shape shape = new Shape();
             shape.setUri(String.valueOf(i));
             List<Double> vector = new ArrayList<>();
+            double[] row = getTheta(i);
             for (int j = 0; j < K; j++) {
-                if (theta[i][j] > 0) {
+                if (row[j] > 0) {
                     int topicId = j;
-                    double score = theta[i][j];
+                    double score = row[j];
                     vector.add(score);
                 }
             }
@@ -598,6 +816,28 @@ public class Model {
      * Load saved model
      */
     public boolean loadModel(){
+        return loadModel(false);
+    }
+
+    /**
+     * Load saved model
+     * @param resume load the newest valid checkpoint instead, if any. Checkpoints are removed once the final model is
+     *               saved, so the ones left are those of an interrupted estimation.
+     */
+    public boolean loadModel(boolean resume){
+        if (resume) {
+            for (File checkpoint : Checkpointer.checkpoints(dir, modelName)){
+                if (BinaryModelFile.read(this, checkpoint.getPath(), true)){
+                    LOG.info("Model loaded from checkpoint " + checkpoint);
+                    return true;
+                }
+            }
+        }
+
+        String binaryFile = dir + File.separator + modelName + binarySuffix;
+        if (useBinaryModel(binaryFile) && BinaryModelFile.read(this, binaryFile, true))
+            return true;
+
         if (!readOthersFile(dir + File.separator + modelName + othersSuffix))
             return false;
 
@@ -614,6 +854,15 @@ public class Model {
         return true;
     }
 
+    /**
+     * Use the binary model if it exists and is not older than the text one
+     */
+    protected boolean useBinaryModel(String binaryFile){
+        File binary = new File(binaryFile);
+        File others = new File(dir + File.separator + modelName + othersSuffix);
+        return binary.exists() && (!others.exists() || binary.lastModified() >= others.lastModified());
+    }
+
     /**
      * Load "others" file to get parameters
      */
@@ -682,9 +931,8 @@ public class Model {
                     , "UTF-8"));
 
             String line;
-            z = new TIntArrayList[M];			
+            TIntArrayList assignments = new TIntArrayList();
             data = new LDADataset();
-            data.setM(M);
             data.V = V;			
             for (i = 0; i < M; i++){
                 line = reader.readLine();
@@ -707,18 +955,18 @@ public class Model {
                     topics.add(Integer.parseInt(tknr2.nextToken()));
                 }//end for each topic assignment
 
-                //allocate and add new document to the corpus
-                Document doc = new Document(words);
-                data.setDoc(doc, i);
+                //add new document to the corpus
+                data.addDoc(words, null, null);
 
                 //assign values for z
-                z[i] = new TIntArrayList();
                 for (j = 0; j < topics.size(); j++){
-                    z[i].add(topics.get(j));
+                    assignments.add(topics.get(j));
                 }
 
             }//end for each doc
 
+            data.trim();
+            z = assignments.toArray();
             reader.close();
         }
         catch (Exception e){
@@ -0,0 +1,692 @@
+package org.librairy.client.topics;
+
+import gnu.trove.list.array.TIntArrayList;
+import org.librairy.client.services.FileService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Online variational Bayes LDA (Hoffman, Blei and Bach, 2010) for corpora that grow over time.
+ *
+ * Documents are consumed in mini-batches. For each batch the per-document topic proportions (gamma) are fitted
+ * against the current topic-word parameters (lambda), and lambda is then moved towards the estimate obtained from the
+ * batch with step size rho = (tau0 + t)^-kappa:
+ *
+ *   lambda = (1 - rho) lambda + rho (eta + D / |batch| sstats)
+ *
+ * lambda is stored as scale * mu + offset, so the decay of all entries is applied to the two scalars and an update
+ * only touches the rows of the words in the batch. New words extend the vocabulary as they are found.
+ *
+ * The state (lambda, counters, seed and vocabulary) can be saved and resumed to absorb more documents later on. Every
+ * mini-batch draws its random values from a generator derived from the seed and the number of updates, so a resumed
+ * model goes on exactly as if it had not been interrupted.
+ */
+public class OnlineEstimator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(OnlineEstimator.class);
+
+    public static String stateSuffix = ".online"; // suffix for the state of the online model
+
+    public static final int MAGIC   = 0x4C44414F; // "LDAO"
+    public static final int VERSION = 2;
+
+    // E-step convergence
+    private static final int MAX_GAMMA_ITERS   = 100;
+    private static final double GAMMA_THRESHOLD = 1e-3;
+
+    // rescale mu before scale underflows
+    private static final double MIN_SCALE = 1e-100;
+
+    private final LDACmdOption option;
+    private final RandomNumberGenerator random; // for inference, batches use their own
+
+    private long seed;
+    private int K;
+    private int V;
+    private double alpha;
+    private double eta;
+    private double tau0;
+    private double kappa;
+    private long updates;       // number of mini-batches absorbed
+    private long numDocuments;  // number of distinct documents absorbed
+
+    private Dictionary dict = new Dictionary();
+
+    // lambda[w][k] = scale * mu[w * K + k] + offset
+    private double[] mu;
+    private double[] muSum;
+    private double scale = 1.0;
+    private double offset = 0.0;
+
+    // row of each word in the current batch, or -1
+    private int[] batchRow = new int[0];
+
+    public OnlineEstimator(LDACmdOption option) throws IOException
+    {
+        this.option = option;
+
+        this.seed = option.seed;
+        if (seed < 0)
+            seed = System.nanoTime() & Long.MAX_VALUE;
+
+        if (option.estc){
+            String stateFile = stateFile();
+            if (!read(stateFile))
+                throw new IOException("Unable to read online model state: " + stateFile);
+            LOG.info("Online model resumed from " + stateFile + " : " + numDocuments + " documents, " + V + " words");
+        }
+        else {
+            K       = option.K;
+            alpha   = (option.alpha < 0.0)? 1.0 / K : option.alpha;
+            eta     = (option.beta < 0.0)? 0.01 : option.beta;
+            tau0    = option.tau0;
+            kappa   = option.kappa;
+            mu      = new double[0];
+            muSum   = new double[K];
+        }
+
+        this.random = RandomNumberGenerator.of(option.rng, seed);
+        LOG.info("Random seed: " + seed);
+    }
+
+    /**
+     * Read the data file in mini-batches, as many times as passes, and save the model
+     */
+    public void estimate() throws IOException
+    {
+        String filePath = option.dir + File.separator + option.dfile;
+        if (!new File(filePath).exists()){
+            filePath = option.dfile;
+        }
+
+        for (int pass = 0; pass < option.npasses; pass++){
+            BufferedReader reader = FileService.reader(filePath);
+            try {
+                List<String> batch = new ArrayList<String>(option.batchSize);
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    batch.add(line);
+                    if (batch.size() == option.batchSize){
+                        update(batch, pass == 0);
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty()) update(batch, pass == 0);
+            } finally {
+                reader.close();
+            }
+            LOG.info("Pass " + (pass + 1) + ": " + numDocuments + " documents, " + V + " words, " + updates + " updates");
+        }
+
+        LOG.debug("\nSaving the online model!");
+        saveModel();
+    }
+
+    /**
+     * Consume a stream of documents in mini-batches
+     */
+    public void train(Iterator<String> documents)
+    {
+        List<String> batch = new ArrayList<String>(option.batchSize);
+        while (documents.hasNext()){
+            batch.add(documents.next());
+            if (batch.size() == option.batchSize){
+                update(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) update(batch);
+    }
+
+    /**
+     * Absorb a mini-batch of new documents
+     */
+    public void update(List<String> batch)
+    {
+        update(batch, true);
+    }
+
+    private void update(List<String> batch, boolean newDocuments)
+    {
+        RandomNumberGenerator random = generator(updates);
+
+        // words of every document and rows of the batch
+        List<int[]> docWords = new ArrayList<int[]>(batch.size());
+        List<int[]> docCounts = new ArrayList<int[]>(batch.size());
+        TIntArrayList rows = new TIntArrayList();
+        for (String str : batch){
+            TIntArrayList ids = parse(str, random);
+            if (ids.isEmpty()) continue;
+
+            TIntArrayList words = new TIntArrayList();
+            TIntArrayList counts = new TIntArrayList();
+            ids.sort();
+            for (int i = 0; i < ids.size(); i++){
+                int w = ids.get(i);
+                if (i > 0 && ids.get(i - 1) == w){
+                    counts.set(counts.size() - 1, counts.get(counts.size() - 1) + 1);
+                    continue;
+                }
+                if (batchRow[w] < 0){
+                    batchRow[w] = rows.size();
+                    rows.add(w);
+                }
+                words.add(batchRow[w]);
+                counts.add(1);
+            }
+            docWords.add(words.toArray());
+            docCounts.add(counts.toArray());
+        }
+
+        int numDocs = docWords.size();
+        if (numDocs == 0) return;
+        if (newDocuments) numDocuments += numDocs;
+
+        // exp(E[log beta]) of the words of the batch
+        int B = rows.size();
+        double[] expElogbeta = new double[B * K];
+        double[] digammaSum = new double[K];
+        for (int k = 0; k < K; k++){
+            digammaSum[k] = GammaFunctions.digamma(scale * muSum[k] + V * offset);
+        }
+        for (int r = 0; r < B; r++){
+            int base = rows.get(r) * K;
+            for (int k = 0; k < K; k++){
+                expElogbeta[r * K + k] = Math.exp(GammaFunctions.digamma(scale * mu[base + k] + offset) - digammaSum[k]);
+            }
+        }
+
+        // E-step
+        double[] sstats = new double[B * K];
+        double[] gamma = new double[K];
+        double[] expElogtheta = new double[K];
+        for (int d = 0; d < numDocs; d++){
+            fit(docWords.get(d), docCounts.get(d), expElogbeta, gamma, expElogtheta, sstats, random);
+        }
+
+        // M-step
+        double rho = Math.pow(tau0 + updates + 1, -kappa);
+        double D = Math.max(option.ndocs, numDocuments);
+        double weight = rho * D / numDocs;
+
+        double decay = 1.0 - rho;
+        if (decay <= 0.0){
+            Arrays.fill(mu, 0.0);
+            Arrays.fill(muSum, 0.0);
+            scale = 1.0;
+        }
+        else {
+            scale *= decay;
+        }
+        offset = decay * offset + rho * eta;
+
+        for (int r = 0; r < B; r++){
+            int w = rows.get(r);
+            int base = w * K;
+            for (int k = 0; k < K; k++){
+                double delta = weight * sstats[r * K + k] / scale;
+                mu[base + k] += delta;
+                muSum[k] += delta;
+            }
+            batchRow[w] = -1;
+        }
+
+        if (scale < MIN_SCALE) rescale();
+        updates++;
+    }
+
+    /**
+     * Fit the topic proportions of a document and add its expected counts to the sufficient statistics
+     * @param words batch rows of the distinct words of the document
+     * @param counts occurrences of each word
+     */
+    private void fit(int[] words, int[] counts, double[] expElogbeta, double[] gamma, double[] expElogtheta, double[] sstats,
+                     RandomNumberGenerator random)
+    {
+        for (int k = 0; k < K; k++){
+            gamma[k] = initialWeight(random);
+        }
+        expectation(gamma, expElogtheta);
+
+        double[] phinorm = new double[words.length];
+        double[] newGamma = new double[K];
+        for (int iter = 0; iter < MAX_GAMMA_ITERS; iter++){
+            normalizers(words, expElogbeta, expElogtheta, phinorm);
+
+            Arrays.fill(newGamma, 0.0);
+            for (int j = 0; j < words.length; j++){
+                double ratio = counts[j] / phinorm[j];
+                int base = words[j] * K;
+                for (int k = 0; k < K; k++){
+                    newGamma[k] += ratio * expElogbeta[base + k];
+                }
+            }
+
+            double change = 0.0;
+            for (int k = 0; k < K; k++){
+                newGamma[k] = alpha + expElogtheta[k] * newGamma[k];
+                change += Math.abs(newGamma[k] - gamma[k]);
+                gamma[k] = newGamma[k];
+            }
+            expectation(gamma, expElogtheta);
+
+            if (change / K < GAMMA_THRESHOLD) break;
+        }
+
+        if (sstats == null) return;
+
+        normalizers(words, expElogbeta, expElogtheta, phinorm);
+        for (int j = 0; j < words.length; j++){
+            double ratio = counts[j] / phinorm[j];
+            int base = words[j] * K;
+            for (int k = 0; k < K; k++){
+                sstats[base + k] += ratio * expElogtheta[k] * expElogbeta[base + k];
+            }
+        }
+    }
+
+    /**
+     * exp(E[log theta]) from gamma
+     */
+    private void expectation(double[] gamma, double[] expElogtheta)
+    {
+        double sum = 0.0;
+        for (int k = 0; k < K; k++){
+            sum += gamma[k];
+        }
+        double digammaSum = GammaFunctions.digamma(sum);
+        for (int k = 0; k < K; k++){
+            expElogtheta[k] = Math.exp(GammaFunctions.digamma(gamma[k]) - digammaSum);
+        }
+    }
+
+    private void normalizers(int[] words, double[] expElogbeta, double[] expElogtheta, double[] phinorm)
+    {
+        for (int j = 0; j < words.length; j++){
+            int base = words[j] * K;
+            double sum = 1e-100;
+            for (int k = 0; k < K; k++){
+                sum += expElogtheta[k] * expElogbeta[base + k];
+            }
+            phinorm[j] = sum;
+        }
+    }
+
+    /**
+     * Topic distribution of a document, without updating the model. Unknown words are ignored.
+     */
+    public double[] inference(String str)
+    {
+        TIntArrayList ids = new TIntArrayList();
+        for (String word : tokens(str)){
+            if (dict.contains(word)) ids.add(dict.getID(word));
+        }
+
+        double[] theta = new double[K];
+        if (ids.isEmpty()){
+            Arrays.fill(theta, 1.0 / K);
+            return theta;
+        }
+
+        ids.sort();
+        TIntArrayList words = new TIntArrayList();
+        TIntArrayList counts = new TIntArrayList();
+        for (int i = 0; i < ids.size(); i++){
+            if (i > 0 && ids.get(i - 1) == ids.get(i)){
+                counts.set(counts.size() - 1, counts.get(counts.size() - 1) + 1);
+            }
+            else {
+                words.add(ids.get(i));
+                counts.add(1);
+            }
+        }
+
+        double[] lambdaSum = lambdaSum();
+        double[] expElogbeta = new double[words.size() * K];
+        for (int j = 0; j < words.size(); j++){
+            int base = words.get(j) * K;
+            for (int k = 0; k < K; k++){
+                expElogbeta[j * K + k] = Math.exp(GammaFunctions.digamma(scale * mu[base + k] + offset)
+                        - GammaFunctions.digamma(lambdaSum[k]));
+            }
+        }
+
+        int[] rows = new int[words.size()];
+        for (int j = 0; j < rows.length; j++){
+            rows[j] = j;
+        }
+        double[] gamma = new double[K];
+        fit(rows, counts.toArray(), expElogbeta, gamma, new double[K], null, random);
+
+        double sum = 0.0;
+        for (int k = 0; k < K; k++){
+            sum += gamma[k];
+        }
+        for (int k = 0; k < K; k++){
+            theta[k] = gamma[k] / sum;
+        }
+        return theta;
+    }
+
+    /**
+     * Expected topic-word distribution, size K x V
+     */
+    public double[][] getPhi()
+    {
+        double[] lambdaSum = lambdaSum();
+        double[][] phi = new double[K][V];
+        for (int w = 0; w < V; w++){
+            for (int k = 0; k < K; k++){
+                phi[k][w] = (scale * mu[w * K + k] + offset) / lambdaSum[k];
+            }
+        }
+        return phi;
+    }
+
+    /**
+     * Expected count lambda of a word in a topic
+     */
+    double lambda(int w, int k)
+    {
+        return scale * mu[w * K + k] + offset;
+    }
+
+    private double[] lambdaSum()
+    {
+        double[] lambdaSum = new double[K];
+        for (int k = 0; k < K; k++){
+            lambdaSum[k] = scale * muSum[k] + V * offset;
+        }
+        return lambdaSum;
+    }
+
+    public int getK()
+    {
+        return K;
+    }
+
+    public int getV()
+    {
+        return V;
+    }
+
+    public long getNumDocuments()
+    {
+        return numDocuments;
+    }
+
+    public Dictionary getDictionary()
+    {
+        return dict;
+    }
+
+    //---------------------------------------------------------------
+    //	Documents
+    //---------------------------------------------------------------
+
+    /**
+     * Word ids of a document, adding new words to the vocabulary
+     */
+    private TIntArrayList parse(String str, RandomNumberGenerator random)
+    {
+        TIntArrayList ids = new TIntArrayList();
+        for (String word : tokens(str)){
+            ids.add(dict.contains(word)? dict.getID(word) : addWord(word, random));
+        }
+        return ids;
+    }
+
+    private static List<String> tokens(String str)
+    {
+        // labels are not used by the online model
+        if (str.startsWith("[")) {
+            String[] labelsBoundary = str.substring(1).split("]", 2);
+            str = (labelsBoundary.length > 1)? labelsBoundary[1].trim() : "";
+        }
+
+        List<String> tokens = new ArrayList<String>();
+        for (String word : str.split("[ \\t\\n]")){
+            if (!word.trim().equals("")) tokens.add(word);
+        }
+        return tokens;
+    }
+
+    private int addWord(String word, RandomNumberGenerator random)
+    {
+        int w = dict.addWord(word);
+        ensureCapacity(w + 1);
+        for (int k = 0; k < K; k++){
+            // lambda of new words starts around 1, as with Gamma(100, 1/100)
+            double value = initialWeight(random) / scale;
+            mu[w * K + k] = value;
+            muSum[k] += value;
+        }
+        V = w + 1;
+        return w;
+    }
+
+    private void ensureCapacity(int words)
+    {
+        if (batchRow.length >= words) return;
+
+        int capacity = Math.max(words, Math.max(16, batchRow.length * 2));
+        mu = Arrays.copyOf(mu, capacity * K);
+        int previous = batchRow.length;
+        batchRow = Arrays.copyOf(batchRow, capacity);
+        Arrays.fill(batchRow, previous, capacity, -1);
+    }
+
+    /**
+     * Random value around 1, approximately distributed as Gamma(100, 1/100)
+     */
+    private double initialWeight(RandomNumberGenerator random)
+    {
+        // Box-Muller transform
+        double u1 = 1.0 - random.nextDouble();
+        double u2 = random.nextDouble();
+        double gaussian = Math.sqrt(-2.0 * Math.log(u1)) * Math.cos(2.0 * Math.PI * u2);
+        return Math.max(0.5, 1.0 + 0.1 * gaussian);
+    }
+
+    /**
+     * Generator of the random values of a mini-batch, the same whether the model was resumed or not
+     */
+    private RandomNumberGenerator generator(long update)
+    {
+        // golden ratio increment, so the streams of nearby seeds do not overlap
+        return RandomNumberGenerator.of(option.rng, seed + update * 0x9E3779B97F4A7C15L);
+    }
+
+    void rescale()
+    {
+        for (int i = 0; i < V * K; i++){
+            mu[i] *= scale;
+        }
+        for (int k = 0; k < K; k++){
+            muSum[k] *= scale;
+        }
+        scale = 1.0;
+    }
+
+    //---------------------------------------------------------------
+    //	I/O Methods
+    //---------------------------------------------------------------
+
+    private String stateFile()
+    {
+        String dir = option.dir;
+        if (dir.endsWith(File.separator))
+            dir = dir.substring(0, dir.length() - 1);
+        return dir + File.separator + option.modelName + stateSuffix;
+    }
+
+    /**
+     * Save the state, the most likely words of each topic and the vocabulary
+     */
+    public boolean saveModel()
+    {
+        String baseName = stateFile();
+        baseName = baseName.substring(0, baseName.length() - stateSuffix.length());
+
+        if (!write(stateFile())) {
+            return false;
+        }
+
+        if (option.twords > 0) {
+            if (!saveModelTwords(baseName + Model.twordsSuffix)) {
+                return false;
+            }
+        }
+
+        return dict.writeWordMap(baseName + Model.wordMapSuffix);
+    }
+
+    /**
+     * Save the most likely words for each topic
+     */
+    public boolean saveModelTwords(String filename)
+    {
+        try{
+            BufferedWriter writer = FileService.writer(filename);
+
+            int twords = Math.min(option.twords, V);
+            double[][] phi = getPhi();
+            int[][] topWords = TopKSelector.select(phi, twords);
+            for (int k = 0; k < K; k++){
+                writer.write("Topic " + k + ":\n");
+
+                for (int w : topWords[k]){
+                    writer.write("\t" + dict.getWord(w) + "\t" + phi[k][w] + "\n");
+                }
+            }
+
+            writer.close();
+        }
+        catch(Exception e){
+            LOG.debug("Error while saving online model twords: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Write the state to a temporary file and rename it to the final one
+     */
+    public boolean write(String filename)
+    {
+        File target = new File(filename);
+        File temp   = new File(filename + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(K);
+            out.writeInt(V);
+            out.writeDouble(alpha);
+            out.writeDouble(eta);
+            out.writeDouble(tau0);
+            out.writeDouble(kappa);
+            out.writeLong(updates);
+            out.writeLong(numDocuments);
+            out.writeLong(seed);
+            out.writeDouble(scale);
+            out.writeDouble(offset);
+
+            for (int k = 0; k < K; k++){
+                out.writeDouble(muSum[k]);
+            }
+            for (int i = 0; i < V * K; i++){
+                out.writeDouble(mu[i]);
+            }
+            for (int w = 0; w < V; w++){
+                out.writeUTF(dict.getWord(w));
+            }
+        }
+        catch (Exception e) {
+            LOG.debug("Error while saving online model: " + e.getMessage());
+            e.printStackTrace();
+            temp.delete();
+            return false;
+        }
+
+        try {
+            BinaryModelFile.moveAtomically(temp, target);
+        } catch (IOException e) {
+            LOG.debug("Error while renaming online model: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Load a saved state
+     */
+    public boolean read(String filename)
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), 1 << 16))) {
+            if (in.readInt() != MAGIC){
+                LOG.debug("Not an online model: " + filename);
+                return false;
+            }
+            int version = in.readInt();
+            if (version < 1 || version > VERSION){
+                LOG.debug("Unsupported online model version " + version + ": " + filename);
+                return false;
+            }
+
+            K               = in.readInt();
+            int words       = in.readInt();
+            alpha           = in.readDouble();
+            eta             = in.readDouble();
+            tau0            = in.readDouble();
+            kappa           = in.readDouble();
+            updates         = in.readLong();
+            numDocuments    = in.readLong();
+            // states without seed go on with the one of the options
+            if (version > 1) seed = in.readLong();
+            scale           = in.readDouble();
+            offset          = in.readDouble();
+
+            muSum = new double[K];
+            for (int k = 0; k < K; k++){
+                muSum[k] = in.readDouble();
+            }
+            mu = new double[0];
+            batchRow = new int[0];
+            ensureCapacity(words);
+            for (int i = 0; i < words * K; i++){
+                mu[i] = in.readDouble();
+            }
+
+            dict = new Dictionary();
+            for (int w = 0; w < words; w++){
+                dict.addWord(in.readUTF());
+            }
+            V = words;
+
+            return true;
+        }
+        catch (Exception e) {
+            LOG.debug("Error while loading online model: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.librairy.client.topics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Approximate distributed (AD-LDA) Gibbs sweep.
+ *
+ * Documents are split into contiguous partitions with a similar number of tokens, one per worker. At the beginning
+ * of each iteration every worker copies the global word-topic counts into its own private arrays and samples its
+ * partition against them. Once all workers are done, the global counts are rebuilt as the previous counts plus the
+ * changes made by each worker.
+ *
+ * Every worker draws from its own random stream, split from the one of the model in partition order, so runs with
+ * the same seed and number of threads are reproducible.
+ */
+public class ParallelSweep
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelSweep.class);
+
+    private final Model model;
+    private final ExecutorService executor;
+    private final List<Worker> workers;
+
+    public ParallelSweep(Model model, int numThreads)
+    {
+        this(model, numThreads, GibbsSampler.DENSE);
+    }
+
+    public ParallelSweep(Model model, int numThreads, String samplerType)
+    {
+        this.model      = model;
+        this.executor   = Executors.newFixedThreadPool(numThreads);
+        this.workers    = new ArrayList<Worker>();
+
+        // balance partitions by number of tokens instead of number of documents
+        long total = model.data.numTokens;
+
+        int from = 0;
+        long accumulated = 0;
+        for (int i = 0; i < numThreads && from < model.M; i++){
+            long limit = (total * (i + 1)) / numThreads;
+            int to = from;
+            while (to < model.M && (accumulated < limit || to == from || i == numThreads - 1)){
+                accumulated += model.data.length(to);
+                to++;
+            }
+            workers.add(new Worker(from, to, samplerType));
+            from = to;
+        }
+
+        LOG.info("Sampling " + model.M + " documents with " + workers.size() + " threads");
+    }
+
+    /**
+     * Sample all documents once and merge the word-topic counts of every worker
+     */
+    public void sweep()
+    {
+        invokeAll(workers);
+        reconcile();
+    }
+
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * nw = nw + sum_p (nw_p - nw)
+     */
+    private void reconcile()
+    {
+        final int P = workers.size();
+        final int K = model.K;
+
+        List<Callable<Void>> merges = new ArrayList<Callable<Void>>();
+        int chunk = (model.V + P - 1) / P;
+        for (int start = 0; start < model.V; start += chunk){
+            final int from  = start;
+            final int to    = Math.min(model.V, start + chunk);
+            merges.add(() -> {
+                CountMatrix global = model.nw;
+                for (int w = from; w < to; w++){
+                    for (int k = 0; k < K; k++){
+                        int previous = global.get(w, k);
+                        int count = previous;
+                        for (Worker worker : workers){
+                            count += worker.nw.get(w, k) - previous;
+                        }
+                        global.set(w, k, count);
+                    }
+                }
+                return null;
+            });
+        }
+        invokeAll(merges);
+
+        for (int k = 0; k < K; k++){
+            int count = model.nwsum[k];
+            for (Worker worker : workers){
+                count += worker.nwsum[k] - model.nwsum[k];
+            }
+            model.nwsum[k] = count;
+        }
+    }
+
+    private void invokeAll(List<? extends Callable<Void>> tasks)
+    {
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)){
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Sampling interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error while sampling", e.getCause());
+        }
+    }
+
+    private class Worker implements Callable<Void>
+    {
+        private final int from;
+        private final int to;
+        private final CountMatrix nw;
+        private final int[] nwsum;
+        private final GibbsSampler sampler;
+
+        Worker(int from, int to, String samplerType)
+        {
+            this.from   = from;
+            this.to     = to;
+            this.nw     = model.nw.copy();
+            this.nwsum  = new int[model.K];
+            this.sampler= GibbsSampler.of(samplerType, model, nw, nwsum, model.random.split());
+        }
+
+        @Override
+        public Void call()
+        {
+            // refresh local copy of word-topic counts
+            nw.copyFrom(model.nw);
+            System.arraycopy(model.nwsum, 0, nwsum, 0, model.K);
+            sampler.reset();
+
+            for (int m = from; m < to; m++){
+                int offset = model.data.offsets[m];
+                for (int n = 0; n < model.data.length(m); n++){
+                    model.z[offset + n] = sampler.sampling(m, n);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.librairy.client.topics;
+
+/**
+ * Source of uniform random numbers for samplers.
+ *
+ * Generators are not thread-safe: every sampling thread must use its own generator, obtained by splitting a parent
+ * one. Splitting is deterministic, so a run with a fixed seed and number of threads can be reproduced.
+ */
+public interface RandomNumberGenerator {
+
+    String SPLITTABLE   = "splittable";
+    String XOROSHIRO    = "xoroshiro";
+
+    /**
+     * @return uniform value in [0, 1)
+     */
+    double nextDouble();
+
+    /**
+     * @return uniform value in [0, bound)
+     */
+    int nextInt(int bound);
+
+    /**
+     * @return new generator with an independent stream, derived from the state of this one
+     */
+    RandomNumberGenerator split();
+
+    /**
+     * Create a generator
+     * @param type splittable or xoroshiro
+     * @param seed initial seed
+     */
+    static RandomNumberGenerator of(String type, long seed)
+    {
+        if (SPLITTABLE.equalsIgnoreCase(type)){
+            return new SplittableGenerator(seed);
+        }
+        else if (XOROSHIRO.equalsIgnoreCase(type)){
+            return new XoroshiroGenerator(seed);
+        }
+        throw new IllegalArgumentException("Unknown random number generator: " + type);
+    }
+}
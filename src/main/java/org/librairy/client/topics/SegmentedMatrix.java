@@ -0,0 +1,72 @@
+package org.librairy.client.topics;
+
+/**
+ * Layout of a matrix stored in contiguous primitive arrays with row-major strides: a single one when it fits in a java
+ * array, several segments of rows otherwise. The value of a row and column is at
+ * [row >>> shift][(row & mask) * cols + col] of the arrays held by subclasses.
+ */
+public abstract class SegmentedMatrix {
+
+    // maximum length of a java array
+    protected static final long MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    // larger matrices are split in arrays of at most 2^30 values
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    protected final int rows;
+    protected final int cols;
+
+    // rows are grouped in segments of 2^shift rows, a single segment if the whole matrix fits in one array
+    protected final int shift;
+    protected final int mask;
+
+    protected SegmentedMatrix(int rows, int cols)
+    {
+        this(rows, cols, MAX_ARRAY_SIZE);
+    }
+
+    /**
+     * @param maxSegmentSize maximum number of values of a segment
+     */
+    protected SegmentedMatrix(int rows, int cols, long maxSegmentSize)
+    {
+        if (cols > MAX_ARRAY_SIZE){
+            throw new IllegalArgumentException("Matrix too large: " + rows + " x " + cols);
+        }
+        this.rows = rows;
+        this.cols = cols;
+
+        if ((long) rows * cols <= maxSegmentSize){
+            this.shift  = 31;
+            this.mask   = Integer.MAX_VALUE;
+        } else {
+            int rowsPerSegment = Integer.highestOneBit((int) Math.max(1, Math.min(MAX_SEGMENT_SIZE, maxSegmentSize) / Math.max(cols, 1)));
+            this.shift  = Integer.numberOfTrailingZeros(rowsPerSegment);
+            this.mask   = rowsPerSegment - 1;
+        }
+    }
+
+    protected int numSegments()
+    {
+        return (int) (((long) rows + mask) >>> shift);
+    }
+
+    /**
+     * Number of values of a segment, only the last one may have less than 2^shift rows
+     */
+    protected int segmentSize(int segment)
+    {
+        long firstRow = (long) segment << shift;
+        return (int) (Math.min((long) mask + 1, rows - firstRow) * cols);
+    }
+
+    public int rows()
+    {
+        return rows;
+    }
+
+    public int cols()
+    {
+        return cols;
+    }
+}
@@ -0,0 +1,236 @@
+package org.librairy.client.topics;
+
+/**
+ * SparseLDA sampler (Yao, Mimno and McCallum, 2009).
+ *
+ * The unnormalized probability of a topic is split into three buckets:
+ *
+ *   (alpha + nd) (beta + nw) / (Vbeta + nwsum) =   alpha beta / (Vbeta + nwsum)       smoothing
+ *                                                + nd beta / (Vbeta + nwsum)          document-topic
+ *                                                + (alpha + nd) nw / (Vbeta + nwsum)  topic-word
+ *
+ * The last two buckets are only non-zero for the topics of the current document and for the topics of the current
+ * word, so they are computed over sparse lists of non-zero topics. Most of the mass usually falls into the topic-word
+ * bucket, so a token costs roughly the number of topics of its word instead of K. The smoothing terms are kept up to
+ * date as the counts change, and moving to another document only resets the terms of the topics of the previous one,
+ * so short documents do not pay for the K topics either.
+ *
+ * Labeled documents are sampled with the dense method.
+ */
+public class SparseGibbsSampler extends GibbsSampler {
+
+    // non-zero topics of each word
+    private final WordTopicLists wordTopics;
+
+    // non-zero topics of the current document
+    private final int[] docTopics;
+    private final int[] docPosition;
+    private int docSize;
+    private int currentDoc = -1;
+
+    // per-topic terms of each bucket and their totals
+    private final double[] smoothing;
+    private final double[] docTerm;
+    private final double[] coefficient; // (alpha + nd) / (Vbeta + nwsum)
+    private double smoothingMass;
+    private double docMass;
+
+    private final double[] wordTerm;
+
+    public SparseGibbsSampler(Model model)
+    {
+        this(model, model.nw, model.nwsum, model.random);
+    }
+
+    public SparseGibbsSampler(Model model, CountMatrix nw, int[] nwsum, RandomNumberGenerator random)
+    {
+        super(model, nw, nwsum, random);
+
+        this.wordTopics     = new WordTopicLists(nw);
+        this.docTopics      = new int[model.K];
+        this.docPosition    = new int[model.K];
+        this.smoothing      = new double[model.K];
+        this.docTerm        = new double[model.K];
+        this.coefficient    = new double[model.K];
+        this.wordTerm       = new double[model.K];
+
+        reset();
+    }
+
+    /**
+     * Rebuild the sparse topic lists and the cached terms from the word-topic counts
+     */
+    @Override
+    public void reset()
+    {
+        int K = model.K;
+        wordTopics.rebuild();
+
+        double Vbeta = model.V * model.beta;
+        for (int k = 0; k < K; k++){
+            smoothing[k]    = model.alpha * model.beta / (nwsum[k] + Vbeta);
+            docTerm[k]      = 0.0;
+            coefficient[k]  = model.alpha / (nwsum[k] + Vbeta);
+            docPosition[k]  = -1;
+        }
+        smoothingMass   = sum(smoothing);
+        docMass         = 0.0;
+        docSize         = 0;
+        currentDoc      = -1;
+    }
+
+    private static double sum(double[] values)
+    {
+        double sum = 0.0;
+        for (double value : values){
+            sum += value;
+        }
+        return sum;
+    }
+
+    @Override
+    public int sampling(int m, int n)
+    {
+        if (m != currentDoc){
+            beginDocument(m);
+        }
+
+        int token = model.data.offsets[m] + n;
+        int w = model.data.tokens[token];
+        int oldTopic = model.z[token];
+
+        if (model.data.labels != null && model.data.getLabels(m) != null){
+            int topic = super.sampling(m, n);
+            updateTopic(m, w, oldTopic);
+            updateTopic(m, w, topic);
+            return topic;
+        }
+
+        // remove z_i from the count variables
+        nw.decrement(w, oldTopic);
+        model.nd.decrement(m, oldTopic);
+        nwsum[oldTopic] -= 1;
+        model.ndsum[m] -= 1;
+        updateTopic(m, w, oldTopic);
+
+        // topic-word bucket
+        int[] topics = wordTopics.topics(w);
+        int size = wordTopics.size(w);
+        double wordMass = 0.0;
+        for (int i = 0; i < size; i++){
+            int k = topics[i];
+            wordTerm[i] = coefficient[k] * nw.get(w, k);
+            wordMass += wordTerm[i];
+        }
+
+        double u = random.nextDouble() * (smoothingMass + docMass + wordMass);
+
+        int topic = -1;
+        if (u < wordMass){
+            for (int i = 0; i < size; i++){
+                u -= wordTerm[i];
+                if (u <= 0){
+                    topic = topics[i];
+                    break;
+                }
+            }
+            if (topic < 0) topic = topics[size - 1];
+        }
+        else if ((u -= wordMass) < docMass){
+            for (int i = 0; i < docSize; i++){
+                u -= docTerm[docTopics[i]];
+                if (u <= 0){
+                    topic = docTopics[i];
+                    break;
+                }
+            }
+            if (topic < 0) topic = docTopics[docSize - 1];
+        }
+        else {
+            u -= docMass;
+            for (int k = 0; k < model.K; k++){
+                u -= smoothing[k];
+                if (u <= 0){
+                    topic = k;
+                    break;
+                }
+            }
+            if (topic < 0) topic = model.K - 1;
+        }
+
+        // add newly estimated z_i to count variables
+        nw.increment(w, topic);
+        model.nd.increment(m, topic);
+        nwsum[topic] += 1;
+        model.ndsum[m] += 1;
+        updateTopic(m, w, topic);
+
+        return topic;
+    }
+
+    /**
+     * Cache the coefficients of the topics used by a document
+     */
+    private void beginDocument(int m)
+    {
+        // restore the terms of the topics of the previous document, the smoothing ones are already up to date
+        double Vbeta = model.V * model.beta;
+        for (int i = 0; i < docSize; i++){
+            int k = docTopics[i];
+            docPosition[k]  = -1;
+            docTerm[k]      = 0.0;
+            coefficient[k]  = model.alpha / (nwsum[k] + Vbeta);
+        }
+        docSize = 0;
+
+        // once per sweep, sum the smoothing terms again so rounding errors do not accumulate
+        if (m <= currentDoc) smoothingMass = sum(smoothing);
+
+        currentDoc  = m;
+        docMass     = 0.0;
+
+        for (int i = model.data.offsets[m]; i < model.data.offsets[m + 1]; i++){
+            int k = model.z[i];
+            if (docPosition[k] < 0){
+                updateTopic(m, -1, k);
+            }
+        }
+    }
+
+    /**
+     * Refresh the cached terms of a topic after its counts changed
+     * @param m document number
+     * @param w word id (or -1 to leave the word lists untouched)
+     * @param k topic id
+     */
+    private void updateTopic(int m, int w, int k)
+    {
+        double Vbeta = model.V * model.beta;
+        double denominator = nwsum[k] + Vbeta;
+        int nd = model.nd.get(m, k);
+
+        double newSmoothing = model.alpha * model.beta / denominator;
+        smoothingMass   += newSmoothing - smoothing[k];
+        smoothing[k]    = newSmoothing;
+
+        double newDocTerm = nd * model.beta / denominator;
+        docMass         += newDocTerm - docTerm[k];
+        docTerm[k]      = newDocTerm;
+
+        coefficient[k]  = (model.alpha + nd) / denominator;
+
+        // document list
+        if (nd == 0 && docPosition[k] >= 0){
+            int last = docTopics[--docSize];
+            docTopics[docPosition[k]] = last;
+            docPosition[last] = docPosition[k];
+            docPosition[k] = -1;
+        }
+        else if (nd > 0 && docPosition[k] < 0){
+            docPosition[k]      = docSize;
+            docTopics[docSize++]= k;
+        }
+
+        if (w >= 0) wordTopics.update(w, k);
+    }
+}
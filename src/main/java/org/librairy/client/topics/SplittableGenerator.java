@@ -0,0 +1,39 @@
+package org.librairy.client.topics;
+
+import java.util.SplittableRandom;
+
+/**
+ * Generator backed by {@link SplittableRandom}
+ */
+public class SplittableGenerator implements RandomNumberGenerator {
+
+    private final SplittableRandom random;
+
+    public SplittableGenerator(long seed)
+    {
+        this(new SplittableRandom(seed));
+    }
+
+    private SplittableGenerator(SplittableRandom random)
+    {
+        this.random = random;
+    }
+
+    @Override
+    public double nextDouble()
+    {
+        return random.nextDouble();
+    }
+
+    @Override
+    public int nextInt(int bound)
+    {
+        return random.nextInt(bound);
+    }
+
+    @Override
+    public RandomNumberGenerator split()
+    {
+        return new SplittableGenerator(random.split());
+    }
+}
@@ -0,0 +1,91 @@
+package org.librairy.client.topics;
+
+import java.util.stream.IntStream;
+
+/**
+ * Partial selection of the k largest values of a row, with a bounded heap of primitive indices.
+ *
+ * Indices are returned by descending value and, for equal values, by ascending index, i.e. the same order as a stable
+ * sort in descending order. A row of size n costs O(n log k) time and O(k) memory.
+ */
+public class TopKSelector {
+
+    /**
+     * Indices of the k largest values of every row, rows being processed in parallel
+     */
+    public static int[][] select(double[][] rows, int k)
+    {
+        int[][] selection = new int[rows.length][];
+        IntStream.range(0, rows.length).parallel().forEach(i -> selection[i] = select(rows[i], k));
+        return selection;
+    }
+
+    /**
+     * Indices of the k largest values of a row
+     */
+    public static int[] select(double[] row, int k)
+    {
+        k = Math.max(0, Math.min(k, row.length));
+
+        // min-heap on the order, i.e. the worst selected index is at the root
+        int[] heap = new int[k];
+        int size = 0;
+        for (int i = 0; i < row.length; i++){
+            if (size < k){
+                heap[size] = i;
+                siftUp(row, heap, size++);
+            }
+            else if (k > 0 && before(row, i, heap[0])){
+                heap[0] = i;
+                siftDown(row, heap, size);
+            }
+        }
+
+        // heap sort from the worst to the best
+        int[] selection = new int[size];
+        for (int last = size - 1; last >= 0; last--){
+            selection[last] = heap[0];
+            heap[0] = heap[last];
+            siftDown(row, heap, last);
+        }
+        return selection;
+    }
+
+    /**
+     * Whether index a goes before index b: greater value, or same value and lower index
+     */
+    private static boolean before(double[] row, int a, int b)
+    {
+        int comparison = Double.compare(row[a], row[b]);
+        return comparison > 0 || (comparison == 0 && a < b);
+    }
+
+    private static void siftUp(double[] row, int[] heap, int position)
+    {
+        int index = heap[position];
+        while (position > 0){
+            int parent = (position - 1) >>> 1;
+            if (!before(row, heap[parent], index)) break;
+            heap[position] = heap[parent];
+            position = parent;
+        }
+        heap[position] = index;
+    }
+
+    private static void siftDown(double[] row, int[] heap, int size)
+    {
+        if (size == 0) return;
+
+        int index = heap[0];
+        int position = 0;
+        int half = size >>> 1;
+        while (position < half){
+            int child = 2 * position + 1;
+            if (child + 1 < size && before(row, heap[child], heap[child + 1])) child++;
+            if (!before(row, index, heap[child])) break;
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = index;
+    }
+}
@@ -0,0 +1,95 @@
+package org.librairy.client.topics;
+
+import java.util.stream.IntStream;
+
+/**
+ * Topic-word distributions p(w|k) of a trained model, computed once from its counts and stored as floats word by word,
+ * to score words and to fold in new documents.
+ */
+public class TopicWordDistributions
+{
+    private final int K;
+    private final int V;
+
+    // p(w|k), size V x K
+    private final FloatDistributionMatrix phi;
+
+    /**
+     * Distributions of a trained model with its own beta
+     */
+    public TopicWordDistributions(Model trnModel)
+    {
+        this(trnModel, trnModel.beta);
+    }
+
+    public TopicWordDistributions(Model trnModel, double beta)
+    {
+        this.K      = trnModel.K;
+        this.V      = trnModel.V;
+        this.phi    = new FloatDistributionMatrix(V, K);
+
+        double Vbeta = V * beta;
+        IntStream.range(0, V).parallel().forEach(w -> {
+            float[] segment = phi.segment(w);
+            int base = phi.base(w);
+            for (int k = 0; k < K; k++){
+                segment[base + k] = (float) ((trnModel.nw.get(w, k) + beta) / (trnModel.nwsum[k] + Vbeta));
+            }
+        });
+    }
+
+    /**
+     * Array of the distributions of a word, from its base
+     */
+    float[] segment(int w)
+    {
+        return phi.segment(w);
+    }
+
+    int base(int w)
+    {
+        return phi.base(w);
+    }
+
+    /**
+     * p(w|k) of a word of the trained vocabulary
+     */
+    public double phi(int w, int k)
+    {
+        return phi.get(w, k);
+    }
+
+    /**
+     * Probability of a word of the trained vocabulary given a topic distribution, sum over topics of theta_k * phi_k,w
+     */
+    public double probability(double[] theta, int w)
+    {
+        float[] segment = phi.segment(w);
+        int base = phi.base(w);
+        double probability = 0.0;
+        for (int k = 0; k < K; k++){
+            probability += theta[k] * segment[base + k];
+        }
+        return probability;
+    }
+
+    /**
+     * Probability of every word of the trained vocabulary given a topic distribution
+     */
+    public double[] probabilities(double[] theta)
+    {
+        double[] probabilities = new double[V];
+        for (int w = 0; w < V; w++){
+            probabilities[w] = probability(theta, w);
+        }
+        return probabilities;
+    }
+
+    /**
+     * Memory used by the distributions
+     */
+    public long sizeInBytes()
+    {
+        return phi.sizeInBytes();
+    }
+}
@@ -0,0 +1,72 @@
+package org.librairy.client.topics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event of an iteration of Gibbs sampling, lasting the iteration.
+ *
+ * Only loaded on JVMs that have the jdk.jfr module (see TrainingMonitor), so the events are passed around as objects.
+ * Compiling it needs JDK 8u262 or later, which the build enforces (see pom.xml).
+ */
+@Name("org.librairy.client.topics.TrainingIteration")
+@Label("Topic Model Iteration")
+@Category({"librairy", "Topic Models"})
+@Description("Iteration of Gibbs sampling of an estimation or inference")
+class TrainingEvent extends Event
+{
+    @Label("Phase")
+    String phase;
+
+    @Label("Model")
+    String model;
+
+    @Label("Iteration")
+    int iteration;
+
+    @Label("Tokens")
+    long tokens;
+
+    @Label("Tokens per Second")
+    double tokensPerSecond;
+
+    @Label("Count Matrices")
+    @DataAmount
+    long countBytes;
+
+    @Label("Log-likelihood")
+    double logLikelihood;
+
+    @Label("ETA")
+    @Timespan(Timespan.MILLISECONDS)
+    long eta;
+
+    static Object startIteration()
+    {
+        TrainingEvent event = new TrainingEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endIteration(Object started, TrainingMetrics metrics)
+    {
+        TrainingEvent event = (TrainingEvent) started;
+        event.end();
+        if (!event.shouldCommit()) return;
+
+        event.phase             = metrics.getPhase();
+        event.model             = metrics.getModel();
+        event.iteration         = metrics.getIteration();
+        event.tokens            = metrics.getTokens();
+        event.tokensPerSecond   = metrics.getTokensPerSecond();
+        event.countBytes        = metrics.getCountBytes();
+        event.logLikelihood     = metrics.getLogLikelihood();
+        event.eta               = metrics.getEtaMillis();
+        event.commit();
+    }
+}
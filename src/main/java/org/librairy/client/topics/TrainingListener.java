@@ -0,0 +1,17 @@
+package org.librairy.client.topics;
+
+/**
+ * Callbacks on the progress of an estimation or inference, run by the sampling thread so they must be quick
+ */
+public interface TrainingListener
+{
+    default void started(TrainingMetrics metrics)
+    {
+    }
+
+    void iterationDone(TrainingMetrics metrics);
+
+    default void finished(TrainingMetrics metrics)
+    {
+    }
+}
@@ -0,0 +1,28 @@
+package org.librairy.client.topics;
+
+/**
+ * JMX view of a running estimation or inference of a model, registered until it finishes as
+ * org.librairy.client.topics:type=Training,phase=...,name=...
+ */
+public interface TrainingMXBean
+{
+    boolean isRunning();
+
+    int getIteration();
+
+    int getIterations();
+
+    long getTokens();
+
+    double getIterationMillis();
+
+    double getTokensPerSecond();
+
+    long getCountBytes();
+
+    double getLogLikelihood();
+
+    long getElapsedMillis();
+
+    long getEtaMillis();
+}
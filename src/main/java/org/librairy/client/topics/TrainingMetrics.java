@@ -0,0 +1,128 @@
+package org.librairy.client.topics;
+
+/**
+ * Progress of an estimation or inference after an iteration of Gibbs sampling
+ */
+public class TrainingMetrics
+{
+    public static final String ESTIMATION   = "estimation";
+    public static final String INFERENCE    = "inference";
+
+    private final String phase;
+    private final String model;
+    private final int iteration;
+    private final int iterations;
+    private final long tokens;
+    private final double iterationMillis;
+    private final long countBytes;
+    private final double logLikelihood;
+    private final long elapsedMillis;
+
+    public TrainingMetrics(String phase, String model, int iteration, int iterations, long tokens,
+                           double iterationMillis, long countBytes, double logLikelihood, long elapsedMillis)
+    {
+        this.phase              = phase;
+        this.model              = model;
+        this.iteration          = iteration;
+        this.iterations         = iterations;
+        this.tokens             = tokens;
+        this.iterationMillis    = iterationMillis;
+        this.countBytes         = countBytes;
+        this.logLikelihood      = logLikelihood;
+        this.elapsedMillis      = elapsedMillis;
+    }
+
+    /**
+     * estimation or inference
+     */
+    public String getPhase()
+    {
+        return phase;
+    }
+
+    /**
+     * directory and name of the model
+     */
+    public String getModel()
+    {
+        return model;
+    }
+
+    /**
+     * iterations done so far, 0 before the first one
+     */
+    public int getIteration()
+    {
+        return iteration;
+    }
+
+    /**
+     * maximum number of iterations, the estimation may stop before once converged
+     */
+    public int getIterations()
+    {
+        return iterations;
+    }
+
+    /**
+     * tokens sampled in each iteration
+     */
+    public long getTokens()
+    {
+        return tokens;
+    }
+
+    /**
+     * wall time of the last iteration
+     */
+    public double getIterationMillis()
+    {
+        return iterationMillis;
+    }
+
+    public double getTokensPerSecond()
+    {
+        return (iterationMillis > 0)? tokens * 1000.0 / iterationMillis : 0.0;
+    }
+
+    /**
+     * memory used by the word-topic and document-topic counts
+     */
+    public long getCountBytes()
+    {
+        return countBytes;
+    }
+
+    /**
+     * last log-likelihood computed, NaN if not enabled or not computed yet
+     */
+    public double getLogLikelihood()
+    {
+        return logLikelihood;
+    }
+
+    public long getElapsedMillis()
+    {
+        return elapsedMillis;
+    }
+
+    /**
+     * estimated time to the last iteration, from the mean time of the iterations done
+     */
+    public long getEtaMillis()
+    {
+        if (iteration <= 0) return -1;
+        return Math.round((double) elapsedMillis / iteration * Math.max(0, iterations - iteration));
+    }
+
+    @Override
+    public String toString()
+    {
+        return phase + " of " + model + ": iteration " + iteration + "/" + iterations
+                + ", " + Math.round(getTokensPerSecond()) + " tokens/s"
+                + ", " + Math.round(iterationMillis) + "ms/iteration"
+                + ", " + (countBytes >> 20) + "MB of counts"
+                + (Double.isNaN(logLikelihood)? "" : ", log-likelihood " + logLikelihood)
+                + ", ETA " + (getEtaMillis() / 1000) + "s";
+    }
+}
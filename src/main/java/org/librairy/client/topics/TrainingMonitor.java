@@ -0,0 +1,250 @@
+package org.librairy.client.topics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Metrics of every iteration of an estimation or inference: tokens sampled per second, iteration time, memory of the
+ * count matrices, log-likelihood if computed and time to the last iteration.
+ *
+ * They are published to the listeners, through a JMX MXBean per model and phase while it runs, as JDK Flight Recorder
+ * events when the JVM supports them, and logged every few seconds. The monitor does not keep the model: its tokens and
+ * the size of its counts are taken when it is created, as they do not change while sampling.
+ */
+public class TrainingMonitor implements TrainingMXBean
+{
+    private static final Logger LOG = LoggerFactory.getLogger(TrainingMonitor.class);
+
+    // minimum time between progress logs
+    private static final long LOG_INTERVAL_MILLIS = 10000;
+
+    // Flight Recorder is only available on JDK 11+ and 8u262+
+    private static final boolean FLIGHT_RECORDER = isAvailable("jdk.jfr.Event");
+
+    // monitor registered under each MXBean name, guarded by TrainingMonitor.class
+    private static final Map<ObjectName,TrainingMonitor> REGISTERED = new HashMap<>();
+
+    private final String phase;
+    private final String name;
+    private final long tokens;
+    private final long countBytes;
+    private final int iterations;
+    private final List<TrainingListener> listeners;
+
+    private volatile boolean running = false;
+    private volatile TrainingMetrics metrics;
+
+    private long start;
+    private long iterationStart;
+    private long lastLog;
+    private int iteration = 0;
+    private Object event = null;
+
+    /**
+     * @param iterations maximum number of iterations
+     */
+    public TrainingMonitor(String phase, Model model, int iterations, List<TrainingListener> listeners)
+    {
+        this.phase      = phase;
+        this.name       = model.dir + File.separator + model.modelName;
+        this.tokens     = model.data.numTokens;
+        this.countBytes = model.countsSizeInBytes();
+        this.iterations = iterations;
+        this.listeners  = listeners;
+        this.metrics    = metrics(0.0, Double.NaN, 0);
+    }
+
+    private static boolean isAvailable(String className)
+    {
+        try {
+            Class.forName(className, false, TrainingMonitor.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private TrainingMetrics metrics(double iterationMillis, double logLikelihood, long elapsedMillis)
+    {
+        return new TrainingMetrics(phase, name, iteration, iterations, tokens, iterationMillis, countBytes, logLikelihood,
+                elapsedMillis);
+    }
+
+    public void start()
+    {
+        start = System.nanoTime();
+        lastLog = System.currentTimeMillis();
+        running = true;
+        register();
+
+        for (TrainingListener listener : listeners){
+            try {
+                listener.started(metrics);
+            } catch (RuntimeException e) {
+                LOG.warn("Error in training listener", e);
+            }
+        }
+    }
+
+    public void iterationStarted()
+    {
+        iterationStart = System.nanoTime();
+        if (FLIGHT_RECORDER) event = TrainingEvent.startIteration();
+    }
+
+    /**
+     * @param logLikelihood last log-likelihood computed, NaN if none
+     */
+    public void iterationDone(double logLikelihood)
+    {
+        long now = System.nanoTime();
+        iteration++;
+        metrics = metrics((now - iterationStart) / 1e6, logLikelihood, (now - start) / 1000000);
+
+        if (event != null){
+            TrainingEvent.endIteration(event, metrics);
+            event = null;
+        }
+
+        for (TrainingListener listener : listeners){
+            try {
+                listener.iterationDone(metrics);
+            } catch (RuntimeException e) {
+                LOG.warn("Error in training listener", e);
+            }
+        }
+
+        if (System.currentTimeMillis() - lastLog >= LOG_INTERVAL_MILLIS || iteration == iterations){
+            lastLog = System.currentTimeMillis();
+            LOG.info(metrics.toString());
+        }
+    }
+
+    public void finish()
+    {
+        running = false;
+        unregister();
+        for (TrainingListener listener : listeners){
+            try {
+                listener.finished(metrics);
+            } catch (RuntimeException e) {
+                LOG.warn("Error in training listener", e);
+            }
+        }
+    }
+
+    /**
+     * Register as the MXBean of the model and phase, replacing the one of a previous run
+     */
+    private void register()
+    {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName();
+            synchronized (TrainingMonitor.class){
+                if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+                server.registerMBean(this, objectName);
+                REGISTERED.put(objectName, this);
+            }
+        } catch (JMException | SecurityException e) {
+            LOG.debug("Error while registering training MBean: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Unregister the MXBean of the model and phase, unless a later run has replaced it
+     */
+    private void unregister()
+    {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName();
+            synchronized (TrainingMonitor.class){
+                if (REGISTERED.get(objectName) != this) return;
+                REGISTERED.remove(objectName);
+                if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+            }
+        } catch (JMException | SecurityException e) {
+            LOG.debug("Error while unregistering training MBean: " + e.getMessage());
+        }
+    }
+
+    private ObjectName objectName() throws JMException
+    {
+        return new ObjectName("org.librairy.client.topics:type=Training,phase=" + phase + ",name=" + ObjectName.quote(name));
+    }
+
+    public TrainingMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    @Override
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    @Override
+    public int getIteration()
+    {
+        return metrics.getIteration();
+    }
+
+    @Override
+    public int getIterations()
+    {
+        return metrics.getIterations();
+    }
+
+    @Override
+    public long getTokens()
+    {
+        return metrics.getTokens();
+    }
+
+    @Override
+    public double getIterationMillis()
+    {
+        return metrics.getIterationMillis();
+    }
+
+    @Override
+    public double getTokensPerSecond()
+    {
+        return metrics.getTokensPerSecond();
+    }
+
+    @Override
+    public long getCountBytes()
+    {
+        return metrics.getCountBytes();
+    }
+
+    @Override
+    public double getLogLikelihood()
+    {
+        return metrics.getLogLikelihood();
+    }
+
+    @Override
+    public long getElapsedMillis()
+    {
+        return metrics.getElapsedMillis();
+    }
+
+    @Override
+    public long getEtaMillis()
+    {
+        return metrics.getEtaMillis();
+    }
+}
@@ -0,0 +1,174 @@
+package org.librairy.client.topics;
+
+import org.librairy.client.services.FileService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Vocabulary restricted by document frequency while a training dataset is loaded.
+ *
+ * A first pass over the file counts the documents of every word in a count-min sketch, which never underestimates a
+ * frequency and takes a fixed amount of memory. The second pass, the actual load, drops the words whose estimate is
+ * below the minimum document frequency, so rare words never reach the dictionary. Once loaded, the exact document
+ * frequencies of the remaining words select the final vocabulary: at least the minimum, at most the maximum, and only
+ * the most frequent words up to the maximum vocabulary size.
+ */
+public class VocabularyPruner
+{
+    // lines tokenized together when scanning a dataset
+    private static final int CHUNK_SIZE = 1024;
+
+    // rows and columns of the sketch (16MB)
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 1 << 20;
+
+    private final int minDf;
+    private final double maxDf;
+    private final int maxVocab;
+
+    // document frequencies at row * WIDTH + hash, null until the dataset is scanned
+    private int[] sketch = null;
+
+    /**
+     * @param minDf minimum number of documents of a word
+     * @param maxDf maximum number of documents of a word, as a fraction of the documents if not greater than 1
+     * @param maxVocab maximum number of words (0 for no limit)
+     */
+    public VocabularyPruner(int minDf, double maxDf, int maxVocab)
+    {
+        this.minDf      = minDf;
+        this.maxDf      = maxDf;
+        this.maxVocab   = maxVocab;
+    }
+
+    /**
+     * Pruner of the options, or null if the vocabulary is not pruned
+     */
+    public static VocabularyPruner of(LDACmdOption option)
+    {
+        if (option.minDf <= 1 && option.maxDf == 1.0 && option.maxVocab <= 0) return null;
+        return new VocabularyPruner(option.minDf, option.maxDf, option.maxVocab);
+    }
+
+    /**
+     * Count the documents of the words of a dataset file in the sketch, only needed for a minimum document frequency
+     */
+    public void scan(String filename, boolean unlabeled) throws IOException
+    {
+        if (minDf <= 1) return;
+
+        sketch = new int[DEPTH * WIDTH];
+        BufferedReader reader = FileService.reader(filename);
+        try {
+            List<String> lines = new ArrayList<String>(CHUNK_SIZE);
+            String line;
+            while ((line = reader.readLine()) != null){
+                lines.add(line);
+                if (lines.size() < CHUNK_SIZE) continue;
+                count(new DocumentChunk(lines, 0, unlabeled, (Dictionary) null, false));
+                lines.clear();
+            }
+            if (!lines.isEmpty()) count(new DocumentChunk(lines, 0, unlabeled, (Dictionary) null, false));
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void count(DocumentChunk chunk)
+    {
+        int[] hashes = new int[chunk.words.size()];
+        for (int l = 0; l < hashes.length; l++){
+            hashes[l] = chunk.words.get(l).hashCode();
+        }
+
+        // each word once per document
+        int[] seen = new int[hashes.length];
+        int token = 0;
+        for (int d = 0; d < chunk.size(); d++){
+            int length = chunk.lengths.get(d);
+            for (int n = 0; n < length; n++){
+                int l = chunk.tokens.get(token++);
+                if (seen[l] == d + 1) continue;
+                seen[l] = d + 1;
+                for (int row = 0; row < DEPTH; row++){
+                    sketch[row * WIDTH + column(hashes[l], row)]++;
+                }
+            }
+        }
+    }
+
+    private static int column(int hash, int row)
+    {
+        // murmur3 finalizer of the hash mixed with the row
+        int h = hash ^ (0x9E3779B9 * (row + 1));
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h & (WIDTH - 1);
+    }
+
+    /**
+     * Upper bound of the number of documents of a word, from the sketch
+     */
+    public int estimate(String word)
+    {
+        if (sketch == null) return Integer.MAX_VALUE;
+
+        int hash = word.hashCode();
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++){
+            estimate = Math.min(estimate, sketch[row * WIDTH + column(hash, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Whether a word may reach the minimum document frequency, so it has to be loaded
+     */
+    public boolean isCandidate(String word)
+    {
+        return sketch == null || estimate(word) >= minDf;
+    }
+
+    /**
+     * Words of a loaded dataset kept in the vocabulary
+     */
+    public boolean[] select(LDADataset data)
+    {
+        // exact document frequencies
+        int[] df = new int[data.V];
+        int[] seen = new int[data.V];
+        for (int m = 0; m < data.M; m++){
+            for (int i = data.offsets[m]; i < data.offsets[m + 1]; i++){
+                int w = data.tokens[i];
+                if (seen[w] == m + 1) continue;
+                seen[w] = m + 1;
+                df[w]++;
+            }
+        }
+
+        long max = (maxDf <= 1.0)? (long) Math.floor(maxDf * data.M) : (long) maxDf;
+        boolean[] keep = new boolean[data.V];
+        double[] scores = new double[data.V];
+        int size = 0;
+        for (int w = 0; w < data.V; w++){
+            keep[w] = df[w] >= minDf && df[w] <= max;
+            scores[w] = keep[w]? df[w] : -1.0;
+            if (keep[w]) size++;
+        }
+
+        // most frequent words, the first ones on ties
+        if (maxVocab > 0 && size > maxVocab){
+            keep = new boolean[data.V];
+            for (int w : TopKSelector.select(scores, maxVocab)){
+                keep[w] = true;
+            }
+        }
+        return keep;
+    }
+}
@@ -0,0 +1,88 @@
+package org.librairy.client.topics;
+
+/**
+ * Non-zero topics of every word, in no particular order, kept up to date as the word-topic counts change so they are
+ * walked in the number of topics of a word instead of K.
+ */
+public class WordTopicLists
+{
+    private final CountMatrix nw;
+
+    private final int[][] topics;
+    private final int[] size;
+
+    /**
+     * Empty lists, to be built from the counts with rebuild()
+     */
+    public WordTopicLists(CountMatrix nw)
+    {
+        this.nw     = nw;
+        this.topics = new int[nw.rows()][];
+        this.size   = new int[nw.rows()];
+    }
+
+    /**
+     * Rebuild the lists from the word-topic counts, e.g. after they were overwritten
+     */
+    public void rebuild()
+    {
+        int K = nw.cols();
+        for (int w = 0; w < topics.length; w++){
+            int count = 0;
+            for (int k = 0; k < K; k++){
+                if (nw.get(w, k) > 0) count++;
+            }
+            int[] list = (topics[w] != null && topics[w].length >= count)? topics[w] : new int[Math.max(count, 4)];
+            count = 0;
+            for (int k = 0; k < K; k++){
+                if (nw.get(w, k) > 0) list[count++] = k;
+            }
+            topics[w]   = list;
+            size[w]     = count;
+        }
+    }
+
+    /**
+     * Non-zero topics of a word, the first size(w) entries
+     */
+    public int[] topics(int w)
+    {
+        return topics[w];
+    }
+
+    public int size(int w)
+    {
+        return size[w];
+    }
+
+    /**
+     * Add or remove a topic of a word after its count changed
+     */
+    public void update(int w, int k)
+    {
+        int count = nw.get(w, k);
+        int[] list = topics[w];
+        int length = size[w];
+        if (count == 0){
+            for (int i = 0; i < length; i++){
+                if (list[i] == k){
+                    list[i] = list[length - 1];
+                    size[w] = length - 1;
+                    break;
+                }
+            }
+        }
+        else if (count == 1){
+            for (int i = 0; i < length; i++){
+                if (list[i] == k) return;
+            }
+            if (length == list.length){
+                int[] expanded = new int[Math.min(nw.cols(), length * 2)];
+                System.arraycopy(list, 0, expanded, 0, length);
+                topics[w] = list = expanded;
+            }
+            list[length] = k;
+            size[w] = length + 1;
+        }
+    }
+}
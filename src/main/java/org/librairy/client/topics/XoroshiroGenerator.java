@@ -0,0 +1,55 @@
+package org.librairy.client.topics;
+
+/**
+ * xoroshiro128++ generator (Blackman and Vigna, 2019). The state is initialized from the seed with SplitMix64.
+ */
+public class XoroshiroGenerator implements RandomNumberGenerator {
+
+    private long s0;
+    private long s1;
+
+    public XoroshiroGenerator(long seed)
+    {
+        long x = seed;
+        s0 = mix(x += 0x9E3779B97F4A7C15L);
+        s1 = mix(x += 0x9E3779B97F4A7C15L);
+    }
+
+    public long nextLong()
+    {
+        final long a = s0;
+        long b = s1;
+        final long result = Long.rotateLeft(a + b, 17) + a;
+
+        b ^= a;
+        s0 = Long.rotateLeft(a, 49) ^ b ^ (b << 21);
+        s1 = Long.rotateLeft(b, 28);
+
+        return result;
+    }
+
+    @Override
+    public double nextDouble()
+    {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    @Override
+    public int nextInt(int bound)
+    {
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    @Override
+    public RandomNumberGenerator split()
+    {
+        return new XoroshiroGenerator(nextLong());
+    }
+
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
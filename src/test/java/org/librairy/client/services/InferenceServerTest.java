@@ -0,0 +1,153 @@
+package org.librairy.client.services;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.librairy.client.topics.Estimator;
+import org.librairy.client.topics.InferenceEngine;
+import org.librairy.client.topics.LDACmdOption;
+import org.librairy.client.topics.SyntheticCorpus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class InferenceServerTest {
+
+    private static final int TOPICS = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SyntheticCorpus corpus;
+    private InferenceServer server;
+
+    private LDACmdOption options(String... args) throws CmdLineException {
+        LDACmdOption option = new LDACmdOption();
+        new CmdLineParser(option).parseArgument(args);
+        return option;
+    }
+
+    @Before
+    public void setup() throws Exception {
+        corpus = new SyntheticCorpus(200, 500, TOPICS, 40, 5);
+        LDACmdOption option = options("-est", "-dir", folder.getRoot().getAbsolutePath(), "-model", "model",
+                "-ntopics", String.valueOf(TOPICS), "-niters", "50", "-seed", "1");
+        Estimator estimator = new Estimator(option, corpus.model(option));
+        estimator.estimate();
+
+        InferenceEngine engine = new InferenceEngine(estimator.getTrnModel(),
+                options("-inf", "-dir", folder.getRoot().getAbsolutePath(), "-model", "model", "-niters", "20"));
+        server = new InferenceServer(engine, 0, 8, 20, 2);
+        server.start();
+    }
+
+    @After
+    public void close(){
+        server.stop();
+    }
+
+    private static void assertDistribution(double[] theta){
+        Assert.assertEquals(TOPICS, theta.length);
+        double sum = 0.0;
+        for (double value : theta){
+            sum += value;
+        }
+        Assert.assertEquals(1.0, sum, 1e-9);
+    }
+
+    private String http(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null){
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()){
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        Assert.assertEquals(200, connection.getResponseCode());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = connection.getInputStream()){
+            byte[] buffer = new byte[4096];
+            int length;
+            while ((length = in.read(buffer)) > 0){
+                bytes.write(buffer, 0, length);
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void submitted() throws Exception {
+        List<CompletableFuture<double[]>> results = new ArrayList<>();
+        for (int m = 0; m < 50; m++){
+            results.add(server.submit(corpus.texts().get(m)));
+        }
+        for (CompletableFuture<double[]> result : results){
+            assertDistribution(result.get(10, TimeUnit.SECONDS));
+        }
+
+        Assert.assertEquals(50, server.getDocuments());
+        Assert.assertTrue(server.getBatches() >= 50 / 8);
+        Assert.assertTrue(server.getBatches() <= 50);
+        Assert.assertEquals(0, server.getQueueDepth());
+        Assert.assertTrue(server.latencyPercentiles(50)[0] > 0.0);
+    }
+
+    @Test
+    public void failedDocumentsDoNotFailTheBatch() throws Exception {
+        CompletableFuture<double[]> failed = server.submit(null);
+        CompletableFuture<double[]> inferred = server.submit(corpus.texts().get(0));
+
+        assertDistribution(inferred.get(10, TimeUnit.SECONDS));
+        try {
+            failed.get(10, TimeUnit.SECONDS);
+            Assert.fail("document without text inferred");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof NullPointerException);
+        }
+    }
+
+    @Test
+    public void servedOverHttp() throws Exception {
+        String response = http("POST", "/inference", corpus.texts().get(0) + "\n\n" + corpus.texts().get(1) + "\n");
+        String[] lines = response.split("\n");
+        Assert.assertEquals(2, lines.length);
+        for (String line : lines){
+            String[] topics = line.trim().split(" ");
+            Assert.assertEquals(TOPICS, topics.length);
+            Assert.assertTrue(topics[0].startsWith("0:"));
+        }
+
+        String stats = http("GET", "/stats", null);
+        Assert.assertTrue(stats, stats.contains("documents 2\n"));
+        Assert.assertTrue(stats, stats.contains("queue 0\n"));
+        Assert.assertTrue(stats, stats.contains("latency_p99_ms "));
+    }
+
+    @Test
+    public void stopped() throws Exception {
+        server.stop();
+        try {
+            server.submit(corpus.texts().get(0)).get(10, TimeUnit.SECONDS);
+            Assert.fail("document inferred by a stopped server");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
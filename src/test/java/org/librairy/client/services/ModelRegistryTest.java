@@ -0,0 +1,101 @@
+package org.librairy.client.services;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.librairy.client.topics.Estimator;
+import org.librairy.client.topics.InferenceEngine;
+import org.librairy.client.topics.LDACmdOption;
+import org.librairy.client.topics.Model;
+import org.librairy.client.topics.SyntheticCorpus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ModelRegistryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Model model;
+
+    private LDACmdOption options(String... args) throws CmdLineException {
+        LDACmdOption option = new LDACmdOption();
+        new CmdLineParser(option).parseArgument(args);
+        return option;
+    }
+
+    @Before
+    public void setup() throws Exception {
+        SyntheticCorpus corpus = new SyntheticCorpus(100, 300, 4, 30, 5);
+        LDACmdOption option = options("-est", "-dir", folder.getRoot().getAbsolutePath(), "-model", "model",
+                "-ntopics", "4", "-niters", "20", "-seed", "1");
+        Estimator estimator = new Estimator(option, corpus.model(option));
+        estimator.estimate();
+        model = estimator.getTrnModel();
+    }
+
+    private InferenceEngine engine(){
+        return new InferenceEngine(model, 10, 5, 1);
+    }
+
+    @Test
+    public void coalescedLoadsCountOneMiss() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ModelRegistry registry = new ModelRegistry(Long.MAX_VALUE, domainId -> {
+            loads.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return engine();
+        });
+
+        List<CompletableFuture<InferenceEngine>> requests = new ArrayList<>();
+        for (int i = 0; i < 4; i++){
+            requests.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return registry.get("domain");
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+        release.countDown();
+
+        InferenceEngine engine = requests.get(0).get(10, TimeUnit.SECONDS);
+        for (CompletableFuture<InferenceEngine> request : requests){
+            Assert.assertSame(engine, request.get(10, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(1, registry.getMisses());
+        Assert.assertEquals(3, registry.getHits());
+    }
+
+    @Test
+    public void resizedWhenEnginesGrow() throws Exception {
+        ModelRegistry registry = new ModelRegistry(Long.MAX_VALUE, domainId -> engine());
+        InferenceEngine engine = registry.get("domain");
+        long loaded = registry.getUsedBytes();
+        Assert.assertEquals(ModelRegistry.estimateSize(engine), loaded);
+
+        // hits do not estimate the size again
+        Assert.assertSame(engine, registry.get("domain"));
+        Assert.assertEquals(loaded, registry.getUsedBytes());
+
+        // scoring words computes the distributions of the engine
+        engine.topWords(engine.inference(new int[]{0, 1, 2}), 5);
+        Assert.assertTrue(registry.getUsedBytes() > loaded);
+        Assert.assertEquals(ModelRegistry.estimateSize(engine), registry.getUsedBytes());
+    }
+}
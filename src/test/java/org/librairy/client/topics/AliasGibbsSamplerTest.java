@@ -0,0 +1,43 @@
+package org.librairy.client.topics;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AliasGibbsSamplerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void samplesTheConditional() throws Exception {
+        // large alpha and beta, so the smoothing table and the uniform document proposal are drawn often
+        SyntheticCorpus corpus = new SyntheticCorpus(100, 200, 8, 30, 4);
+        Model model = SamplerChecks.model(corpus, folder.getRoot(), 8, 0.5, 0.1);
+
+        AliasGibbsSampler sampler = new AliasGibbsSampler(model);
+        for (int iter = 0; iter < 5; iter++){
+            SamplerChecks.sweep(sampler, model);
+        }
+        SamplerChecks.assertConsistentCounts(model);
+
+        // the Metropolis-Hastings steps keep the conditional stationary, whatever the staleness of the tables
+        for (int m : new int[]{3, 50, 7, 99, 0}){
+            SamplerChecks.assertSamplesConditional(sampler, model, m, m % 30, 200000);
+            SamplerChecks.sweep(sampler, model);
+        }
+        for (int m = 0; m < 90; m += 9){
+            SamplerChecks.assertSamplesJointConditional(sampler, model, m, 0, m + 5, 1, 100000);
+        }
+        SamplerChecks.assertConsistentCounts(model);
+    }
+
+    @Test
+    public void topicsRecoveredAsDense() throws Exception {
+        SyntheticCorpus corpus = new SyntheticCorpus(500, 500, 5, 80, 3);
+
+        SyntheticCorpus.Recovery dense = SamplerChecks.recovery(corpus, folder.getRoot(), "-niters", "150");
+        SyntheticCorpus.Recovery alias = SamplerChecks.recovery(corpus, folder.getRoot(), "-niters", "150", "-sampler", GibbsSampler.ALIAS);
+        SamplerChecks.assertRecoveredAsDense(dense, alias);
+    }
+}
@@ -0,0 +1,66 @@
+package org.librairy.client.topics;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+
+import java.io.IOException;
+
+public class BinaryModelFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LDACmdOption options(String... args) throws CmdLineException {
+        LDACmdOption option = new LDACmdOption();
+        new CmdLineParser(option).parseArgument(args);
+        return option;
+    }
+
+    private Model estimate(String format) throws Exception {
+        SyntheticCorpus corpus = new SyntheticCorpus(100, 300, 4, 30, 5);
+        LDACmdOption option = options("-est", "-dir", folder.getRoot().getAbsolutePath(), "-model", "model",
+                "-ntopics", "4", "-niters", "20", "-seed", "1", "-modelformat", format);
+        Estimator estimator = new Estimator(option, corpus.model(option));
+        estimator.estimate();
+        return estimator.getTrnModel();
+    }
+
+    private Model load() throws CmdLineException, IOException {
+        LDACmdOption option = options("-inf", "-dir", folder.getRoot().getAbsolutePath(), "-model", "model");
+        return new Inferencer(option).trnModel;
+    }
+
+    private static void assertSameCounts(Model expected, Model actual){
+        Assert.assertEquals(expected.K, actual.K);
+        Assert.assertEquals(expected.V, actual.V);
+        Assert.assertArrayEquals(expected.nwsum, actual.nwsum);
+        for (int w = 0; w < expected.V; w++){
+            Assert.assertEquals(expected.data.localDict.getWord(w), actual.data.localDict.getWord(w));
+            for (int k = 0; k < expected.K; k++){
+                Assert.assertEquals(expected.nw.get(w, k), actual.nw.get(w, k));
+            }
+        }
+    }
+
+    @Test
+    public void savedInBothFormatsLoadsMapped() throws Exception {
+        Model trained = estimate(Model.BOTH);
+
+        Model loaded = load();
+        Assert.assertTrue(loaded.nw instanceof MappedCountMatrix);
+        assertSameCounts(trained, loaded);
+    }
+
+    @Test
+    public void savedAsTextLoadsCounts() throws Exception {
+        Model trained = estimate(Model.TEXT);
+
+        Model loaded = load();
+        Assert.assertFalse(loaded.nw instanceof MappedCountMatrix);
+        assertSameCounts(trained, loaded);
+    }
+}
@@ -0,0 +1,59 @@
+package org.librairy.client.topics;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+
+public class CheckpointerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Model load(boolean resume) throws Exception {
+        Model model = new Model(SamplerChecks.options("-inf", "-dir", folder.getRoot().getAbsolutePath(), "-model", "model"), null, false);
+        Assert.assertTrue(model.init(false, resume));
+        return model;
+    }
+
+    @Test
+    public void onlyReadWhenResumed() throws Exception {
+        SyntheticCorpus corpus = new SyntheticCorpus(100, 300, 4, 30, 5);
+        LDACmdOption option = SamplerChecks.options("-est", "-dir", folder.getRoot().getAbsolutePath(), "-model", "model",
+                "-ntopics", "4", "-niters", "10", "-seed", "1", "-checkpointiters", "5");
+        Estimator estimator = new Estimator(option, corpus.model(option));
+        estimator.estimate();
+
+        // checkpoints are removed once the final model is saved
+        Model trained = estimator.getTrnModel();
+        Assert.assertTrue(Checkpointer.checkpoints(trained.dir, trained.modelName).isEmpty());
+        int[] saved = trained.z.clone();
+
+        // an estimation interrupted after some more iterations
+        GibbsSampler sampler = GibbsSampler.of(GibbsSampler.DENSE, trained);
+        for (int iter = 0; iter < 5; iter++){
+            SamplerChecks.sweep(sampler, trained);
+        }
+        trained.liter += 5;
+        Checkpointer checkpointer = new Checkpointer(trained, 1, 0);
+        Assert.assertTrue(checkpointer.checkpoint());
+        checkpointer.close();
+        Assert.assertEquals(1, Checkpointer.checkpoints(trained.dir, trained.modelName).size());
+        Assert.assertFalse(Arrays.equals(saved, trained.z));
+
+        // inference and other loads of the saved model ignore the checkpoint
+        Model loaded = load(false);
+        Assert.assertArrayEquals(saved, loaded.z);
+
+        // resuming the estimation goes on from the checkpoint
+        Model resumed = load(true);
+        Assert.assertArrayEquals(trained.z, resumed.z);
+        Assert.assertEquals(trained.liter, resumed.liter);
+
+        // a new estimation does not leave them behind
+        new Estimator(option, corpus.model(option)).estimate();
+        Assert.assertTrue(Checkpointer.checkpoints(trained.dir, trained.modelName).isEmpty());
+    }
+}
@@ -0,0 +1,88 @@
+package org.librairy.client.topics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class DictionaryTest {
+
+    private static final String[] WORDS = {"a", "topic", "caf\u00e9", "\u65e5\u672c", "\ud83d\ude00", "x\ud83d\ude00y", "?", "a?"};
+
+    private static String word(Random random){
+        StringBuilder word = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+        if (random.nextBoolean()) word.append(random.nextInt(5000));
+        return word.toString();
+    }
+
+    @Test
+    public void lookedUpAsAdded(){
+        Random random = new Random(11);
+        Map<String,Integer> expected = new LinkedHashMap<String,Integer>();
+        Dictionary dict = new Dictionary();
+        for (int i = 0; i < 20000; i++){
+            String word = word(random);
+            if (!expected.containsKey(word)) expected.put(word, expected.size());
+            Assert.assertEquals(expected.get(word).intValue(), dict.addWord(word));
+        }
+
+        Assert.assertEquals(expected.size(), dict.size());
+        for (Map.Entry<String,Integer> entry : expected.entrySet()){
+            String word = entry.getKey();
+            int id = entry.getValue();
+            byte[] bytes = ("  " + word + " ").getBytes(StandardCharsets.UTF_8);
+
+            Assert.assertEquals(word, dict.getWord(id));
+            Assert.assertEquals(id, dict.getID(word));
+            Assert.assertEquals(id, dict.getID(new StringBuilder(word)));
+            Assert.assertEquals(id, dict.getID(bytes, 2, bytes.length - 3));
+        }
+        Assert.assertEquals(-1, dict.getID("missing"));
+        Assert.assertNull(dict.getWord(dict.size()));
+    }
+
+    @Test
+    public void unpairedSurrogatesFoundAsStored(){
+        Dictionary dict = new Dictionary();
+        String[] words = {"a\ud83d", "\ude00b", "\ude00\ud83d", "c\ud83d\ud83d\ude00"};
+        String[] stored = {"a?", "?b", "??", "c?\ud83d\ude00"};
+        for (int i = 0; i < words.length; i++){
+            int id = dict.addWord(words[i]);
+            Assert.assertEquals(i, id);
+            Assert.assertEquals(stored[i], dict.getWord(id));
+            Assert.assertEquals(id, dict.addWord(words[i]));
+            Assert.assertEquals(id, dict.getID(new StringBuilder(words[i])));
+            Assert.assertEquals(id, dict.getID(stored[i]));
+        }
+        Assert.assertEquals(words.length, dict.size());
+    }
+
+    @Test
+    public void wrapped(){
+        Dictionary dict = new Dictionary();
+        for (String word : WORDS){
+            dict.addWord(word);
+        }
+
+        ByteBuffer pool = ByteBuffer.allocateDirect(64);
+        int[] offsets = new int[WORDS.length + 2];
+        for (int w = 0; w < WORDS.length; w++){
+            byte[] bytes = dict.getWord(w).getBytes(StandardCharsets.UTF_8);
+            pool.put(bytes);
+            offsets[w + 1] = offsets[w] + bytes.length;
+        }
+
+        Dictionary wrapped = Dictionary.wrap(pool, offsets, WORDS.length);
+        for (int w = 0; w < WORDS.length; w++){
+            Assert.assertEquals(WORDS[w], wrapped.getWord(w));
+            Assert.assertEquals(w, wrapped.getID(WORDS[w]));
+        }
+        Assert.assertEquals(WORDS.length, wrapped.addWord("new"));
+        Assert.assertEquals("new", wrapped.getWord(WORDS.length));
+        Assert.assertEquals(0, wrapped.getID("a"));
+    }
+}
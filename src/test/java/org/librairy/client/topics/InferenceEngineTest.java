@@ -0,0 +1,98 @@
+package org.librairy.client.topics;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class InferenceEngineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LDACmdOption options(String... args) throws CmdLineException {
+        LDACmdOption option = new LDACmdOption();
+        new CmdLineParser(option).parseArgument(args);
+        return option;
+    }
+
+    /**
+     * Top words scoring the words of the vocabulary one by one
+     */
+    private static int[] fullScan(InferenceEngine engine, double[] theta, int n){
+        double[] scores = new double[engine.getModel().V];
+        for (int w = 0; w < scores.length; w++){
+            scores[w] = engine.probability(theta, w);
+        }
+        return TopKSelector.select(scores, n);
+    }
+
+    private static double[] theta(Random random, int K, int nonZero){
+        double[] theta = new double[K];
+        double sum = 0.0;
+        for (int i = 0; i < nonZero; i++){
+            int k = random.nextInt(K);
+            theta[k] += random.nextDouble();
+            sum += theta[k];
+        }
+        for (int k = 0; k < K; k++){
+            theta[k] /= sum;
+        }
+        return theta;
+    }
+
+    /**
+     * @param foldIn fold-in estimate of theta, empty to sample against the trained counts
+     */
+    private void assertTopWords(String foldIn) throws Exception {
+        SyntheticCorpus corpus = new SyntheticCorpus(300, 3000, 20, 60, 9);
+        LDACmdOption option = options("-est", "-dir", folder.getRoot().getAbsolutePath(), "-model", "model",
+                "-ntopics", "20", "-niters", "20", "-seed", "1");
+        Estimator estimator = new Estimator(option, corpus.model(option));
+        estimator.estimate();
+
+        LDACmdOption inference = options("-inf", "-dir", folder.getRoot().getAbsolutePath(), "-model", "model", "-niters", "10");
+        inference.foldIn = foldIn;
+        InferenceEngine engine = new InferenceEngine(estimator.getTrnModel(), inference);
+
+        Random random = new Random(3);
+        int K = engine.getModel().K;
+        for (int test = 0; test < 100; test++){
+            double[] theta = (test % 10 == 0)? engine.inference(corpus.texts().get(test)) : theta(random, K, 1 + random.nextInt(2 * K));
+            for (int n : new int[]{1, 10, 50, 2000, 4000}){
+                Assert.assertArrayEquals("test " + test + ", n " + n, fullScan(engine, theta, n), engine.topWords(theta, n));
+            }
+        }
+
+        // probabilities from the trained counts
+        Model model = engine.getModel();
+        double[] theta = theta(random, K, K);
+        for (int w = 0; w < model.V; w += 7){
+            double probability = 0.0;
+            for (int k = 0; k < K; k++){
+                probability += theta[k] * (model.nw.get(w, k) + model.beta) / (model.nwsum[k] + model.V * model.beta);
+            }
+            Assert.assertEquals(probability, engine.probability(theta, w), 1e-6 * probability);
+        }
+
+        // uniform topics, i.e. many ties
+        double[] uniform = new double[K];
+        Arrays.fill(uniform, 1.0 / K);
+        Assert.assertArrayEquals(fullScan(engine, uniform, 30), engine.topWords(uniform, 30));
+    }
+
+    @Test
+    public void topWords() throws Exception {
+        assertTopWords("");
+    }
+
+    @Test
+    public void topWordsWithFoldIn() throws Exception {
+        assertTopWords(FoldIn.GIBBS);
+    }
+}
@@ -0,0 +1,204 @@
+package org.librairy.client.topics;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.librairy.client.services.FileService;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class LDADatasetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String[] WORDS = {"a", "b", "topic", "model", "caf\u00e9", "\u65e5\u672c", "x\r", "\u000by", "[z]", "]"};
+
+    private static final String[] SEPARATORS = {" ", " ", " ", "\t", "  ", " \t ", " \r ", " \u000b ", " \u0001 "};
+
+    /**
+     * Documents tokenized as before the compressed sparse row form: a document per line, words split on spaces, tabs
+     * and new lines, blank words skipped, optional labels between brackets at the beginning of the line.
+     */
+    private static class Baseline {
+
+        final Map<String,Integer> dict = new LinkedHashMap<String,Integer>();
+        final List<int[]> docs = new ArrayList<int[]>();
+        final List<int[]> labels = new ArrayList<int[]>();
+        final List<String> rawTexts = new ArrayList<String>();
+
+        Baseline(List<String> lines, boolean unlabeled, Dictionary globalDict){
+            for (String str : lines){
+                int[] docLabels = null;
+                if (str.startsWith("[")) {
+                    String[] labelsBoundary = str.substring(1).split("]", 2);
+                    String[] labelStrs = labelsBoundary[0].trim().split("[ \\t]");
+                    str = labelsBoundary[1].trim();
+
+                    if (!unlabeled) {
+                        TreeSet<Integer> labelSet = new TreeSet<Integer>();
+                        for (String labelStr : labelStrs) {
+                            try {
+                                labelSet.add(Integer.parseInt(labelStr.trim()));
+                            } catch (NumberFormatException nfe) {
+                                // ignored
+                            }
+                        }
+                        docLabels = labelSet.stream().mapToInt(Integer::intValue).toArray();
+                    }
+                }
+
+                List<Integer> ids = new ArrayList<Integer>();
+                for (String word : str.split("[ \\t\\n]")){
+                    if (word.trim().equals("")) continue;
+                    if (globalDict != null && !globalDict.contains(word)) continue;
+
+                    if (!dict.containsKey(word)) dict.put(word, dict.size());
+                    ids.add(dict.get(word));
+                }
+
+                docs.add(ids.stream().mapToInt(Integer::intValue).toArray());
+                labels.add(docLabels);
+                rawTexts.add(str);
+            }
+        }
+    }
+
+    private static List<String> lines(int size, long seed){
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<String>();
+        for (int m = 0; m < size; m++){
+            StringBuilder line = new StringBuilder();
+            switch (random.nextInt(8)){
+                case 0: line.append("[").append(random.nextInt(5)).append(" ").append(random.nextInt(5)).append("] "); break;
+                case 1: line.append("[3\t1 x 3]"); break;
+                case 2: line.append("[ ]  "); break;
+                default: break;
+            }
+            if (random.nextInt(10) == 0) line.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+
+            int length = random.nextInt(12);
+            for (int n = 0; n < length; n++){
+                if (n > 0) line.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+                line.append(WORDS[random.nextInt(WORDS.length)]);
+                if (random.nextInt(4) == 0) line.append(random.nextInt(500));
+            }
+            if (random.nextInt(10) == 0) line.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    private File write(List<String> lines) throws IOException {
+        File file = new File(folder.getRoot(), "corpus-" + System.nanoTime() + ".txt");
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)){
+            for (String line : lines){
+                writer.write(line);
+                writer.write("\n");
+            }
+        }
+        return file;
+    }
+
+    /**
+     * lines as read by the baseline, i.e. also split on carriage returns
+     */
+    private static List<String> read(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        try (BufferedReader reader = FileService.reader(file.getAbsolutePath())){
+            String line;
+            while ((line = reader.readLine()) != null){
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static void assertSameDocuments(Baseline expected, LDADataset data){
+        Assert.assertEquals(expected.docs.size(), data.M);
+        Assert.assertEquals(expected.dict.size(), data.V);
+        Assert.assertEquals(expected.dict.size(), data.localDict.size());
+        for (Map.Entry<String,Integer> entry : expected.dict.entrySet()){
+            Assert.assertEquals(entry.getKey(), data.localDict.getWord(entry.getValue()));
+            Assert.assertEquals(entry.getValue().intValue(), data.localDict.getID(entry.getKey()));
+        }
+
+        int numTokens = 0;
+        for (int m = 0; m < data.M; m++){
+            int[] words = Arrays.copyOfRange(data.tokens, data.offsets[m], data.offsets[m + 1]);
+            Assert.assertArrayEquals("document " + m, expected.docs.get(m), words);
+            Assert.assertArrayEquals("document " + m, expected.docs.get(m), data.getDocument(m).words);
+            Assert.assertArrayEquals("labels of document " + m, expected.labels.get(m), data.getLabels(m));
+            numTokens += words.length;
+        }
+        Assert.assertEquals(numTokens, data.numTokens);
+    }
+
+    @Test
+    public void readAsBaseline() throws IOException {
+        File file = write(lines(3000, 1));
+
+        for (boolean unlabeled : new boolean[]{false, true}){
+            Baseline expected = new Baseline(read(file), unlabeled, null);
+            for (int threads : new int[]{1, 3}){
+                LDADataset data = new LDADataset();
+                data.numThreads = threads;
+                data.readDataSet(file.getAbsolutePath(), unlabeled);
+                assertSameDocuments(expected, data);
+            }
+        }
+    }
+
+    @Test
+    public void readWithGlobalDictionary() throws IOException {
+        File file = write(lines(2500, 2));
+        Baseline train = new Baseline(lines(500, 3), false, null);
+
+        Dictionary globalDict = new Dictionary();
+        for (String word : train.dict.keySet()){
+            globalDict.addWord(word);
+        }
+
+        Baseline expected = new Baseline(read(file), false, globalDict);
+        LDADataset data = new LDADataset();
+        data.numThreads = 2;
+        data.setDictionary(globalDict);
+        data.readDataSet(file.getAbsolutePath(), false);
+
+        assertSameDocuments(expected, data);
+        for (int w = 0; w < data.V; w++){
+            Assert.assertEquals(globalDict.getID(data.localDict.getWord(w)), data.lid2gid[w]);
+        }
+    }
+
+    @Test
+    public void addedAsBaseline(){
+        List<String> lines = lines(200, 4);
+        Baseline expected = new Baseline(lines, false, null);
+
+        LDADataset data = new LDADataset();
+        data.keepRawText = true;
+        for (String line : lines){
+            data.addDoc(line, false);
+        }
+
+        assertSameDocuments(expected, data);
+        for (int m = 0; m < data.M; m++){
+            Assert.assertEquals(expected.rawTexts.get(m), data.getRawText(m));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.librairy.client.topics;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+public class OnlineEstimatorTest {
+
+    private static final int TOPICS = 4;
+    private static final int BATCH = 25;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<String> texts;
+
+    @Before
+    public void setup(){
+        texts = new SyntheticCorpus(200, 300, TOPICS, 30, 7).texts();
+    }
+
+    private OnlineEstimator estimator(String mode) throws Exception {
+        return new OnlineEstimator(SamplerChecks.options("-online", mode, "-dir", folder.getRoot().getAbsolutePath(),
+                "-model", "online", "-ntopics", String.valueOf(TOPICS), "-batchsize", String.valueOf(BATCH),
+                "-tau0", "4", "-kappa", "0.7", "-twords", "5", "-seed", "3"));
+    }
+
+    private void update(OnlineEstimator estimator, int fromBatch, int toBatch){
+        for (int b = fromBatch; b < toBatch; b++){
+            estimator.update(texts.subList(b * BATCH, (b + 1) * BATCH));
+        }
+    }
+
+    private static double[][] lambda(OnlineEstimator estimator){
+        double[][] lambda = new double[estimator.getV()][estimator.getK()];
+        for (int w = 0; w < lambda.length; w++){
+            for (int k = 0; k < lambda[w].length; k++){
+                lambda[w][k] = estimator.lambda(w, k);
+            }
+        }
+        return lambda;
+    }
+
+    @Test
+    public void lazilyDecayed() throws Exception {
+        OnlineEstimator estimator = estimator("-est");
+        update(estimator, 0, 4);
+        double[][] before = lambda(estimator);
+
+        // words of the vocabulary missing from the next batch only decay towards eta
+        List<String> batch = texts.subList(4 * BATCH, 5 * BATCH);
+        boolean[] inBatch = new boolean[estimator.getV()];
+        for (String text : batch){
+            for (String word : text.split(" ")){
+                int w = estimator.getDictionary().getID(word);
+                if (w >= 0) inBatch[w] = true;
+            }
+        }
+        estimator.update(batch);
+
+        double rho = Math.pow(4 + 5, -0.7);
+        double eta = 0.01;
+        int decayed = 0;
+        for (int w = 0; w < before.length; w++){
+            for (int k = 0; k < TOPICS; k++){
+                double expected = (1 - rho) * before[w][k] + rho * eta;
+                if (inBatch[w]){
+                    Assert.assertTrue("lambda of word " + w + " not updated", estimator.lambda(w, k) > expected);
+                }
+                else {
+                    Assert.assertEquals("lambda of word " + w, expected, estimator.lambda(w, k), expected * 1e-12);
+                    decayed++;
+                }
+            }
+        }
+        Assert.assertTrue(decayed > 0);
+
+        // the sums of lambda follow the lazy updates
+        double[][] phi = estimator.getPhi();
+        for (int k = 0; k < TOPICS; k++){
+            double sum = 0.0;
+            for (int w = 0; w < estimator.getV(); w++){
+                sum += phi[k][w];
+            }
+            Assert.assertEquals(1.0, sum, 1e-9);
+        }
+    }
+
+    @Test
+    public void rescaled() throws Exception {
+        OnlineEstimator estimator = estimator("-est");
+        OnlineEstimator reference = estimator("-est");
+        update(estimator, 0, 3);
+        update(reference, 0, 3);
+
+        double[][] before = lambda(estimator);
+        estimator.rescale();
+        double[][] after = lambda(estimator);
+        for (int w = 0; w < before.length; w++){
+            for (int k = 0; k < TOPICS; k++){
+                Assert.assertEquals(before[w][k], after[w][k], before[w][k] * 1e-12);
+            }
+        }
+
+        update(estimator, 3, 6);
+        update(reference, 3, 6);
+        double[][] expected = reference.getPhi();
+        double[][] phi = estimator.getPhi();
+        for (int k = 0; k < TOPICS; k++){
+            Assert.assertArrayEquals(expected[k], phi[k], 1e-9);
+        }
+    }
+
+    @Test
+    public void resumedAsUninterrupted() throws Exception {
+        OnlineEstimator uninterrupted = estimator("-est");
+        update(uninterrupted, 0, 8);
+
+        OnlineEstimator first = estimator("-est");
+        update(first, 0, 4);
+        Assert.assertTrue(first.saveModel());
+        Assert.assertTrue(new File(folder.getRoot(), "online" + OnlineEstimator.stateSuffix).exists());
+        Assert.assertTrue(new File(folder.getRoot(), "online" + Model.twordsSuffix).exists());
+
+        OnlineEstimator resumed = estimator("-estc");
+        Assert.assertEquals(4 * BATCH, resumed.getNumDocuments());
+        Assert.assertEquals(first.getV(), resumed.getV());
+        Assert.assertArrayEquals(first.getPhi()[0], resumed.getPhi()[0], 0.0);
+        update(resumed, 4, 8);
+
+        Assert.assertEquals(uninterrupted.getNumDocuments(), resumed.getNumDocuments());
+        Assert.assertEquals(uninterrupted.getV(), resumed.getV());
+        for (int w = 0; w < uninterrupted.getV(); w++){
+            Assert.assertEquals(uninterrupted.getDictionary().getWord(w), resumed.getDictionary().getWord(w));
+        }
+        double[][] expected = uninterrupted.getPhi();
+        double[][] phi = resumed.getPhi();
+        for (int k = 0; k < TOPICS; k++){
+            Assert.assertArrayEquals(expected[k], phi[k], 0.0);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.librairy.client.topics;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelSweepTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private int[] sweep(String samplerType, int threads, int iterations) throws Exception {
+        SyntheticCorpus corpus = new SyntheticCorpus(300, 400, 6, 40, 2);
+        Model model = SamplerChecks.model(corpus, folder.getRoot(), 6, 0.1, 0.01);
+
+        ParallelSweep sweep = new ParallelSweep(model, threads, samplerType);
+        try {
+            for (int iter = 0; iter < iterations; iter++){
+                sweep.sweep();
+                // the merged word-topic counts are the ones of the topics drawn by every worker
+                SamplerChecks.assertConsistentCounts(model);
+            }
+        } finally {
+            sweep.shutdown();
+        }
+        return model.z.clone();
+    }
+
+    @Test
+    public void countsReconciled() throws Exception {
+        for (String samplerType : new String[]{GibbsSampler.DENSE, GibbsSampler.SPARSE, GibbsSampler.ALIAS}){
+            sweep(samplerType, 3, 5);
+        }
+    }
+
+    @Test
+    public void reproducible() throws Exception {
+        Assert.assertArrayEquals(sweep(GibbsSampler.DENSE, 3, 3), sweep(GibbsSampler.DENSE, 3, 3));
+        Assert.assertArrayEquals(sweep(GibbsSampler.SPARSE, 2, 3), sweep(GibbsSampler.SPARSE, 2, 3));
+    }
+
+    @Test
+    public void topicsRecoveredAsDense() throws Exception {
+        SyntheticCorpus corpus = new SyntheticCorpus(500, 500, 5, 80, 3);
+
+        SyntheticCorpus.Recovery dense = SamplerChecks.recovery(corpus, folder.getRoot(), "-niters", "150");
+        SyntheticCorpus.Recovery parallel = SamplerChecks.recovery(corpus, folder.getRoot(), "-niters", "150", "-nthreads", "3");
+        SamplerChecks.assertRecoveredAsDense(dense, parallel);
+    }
+}
@@ -0,0 +1,207 @@
+package org.librairy.client.topics;
+
+import org.junit.Assert;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks shared by the tests of the sampling engines
+ */
+public class SamplerChecks {
+
+    // total variation distance allowed between the topics drawn and their distribution
+    private static final double MAX_DISTANCE = 0.005;
+
+    public static LDACmdOption options(String... args) throws CmdLineException {
+        LDACmdOption option = new LDACmdOption();
+        new CmdLineParser(option).parseArgument(args);
+        return option;
+    }
+
+    /**
+     * Model of a corpus with random topics, without labels
+     */
+    public static Model model(SyntheticCorpus corpus, File dir, int K, double alpha, double beta) throws Exception {
+        LDACmdOption option = options("-est", "-dir", dir.getAbsolutePath(), "-model", "model",
+                "-ntopics", String.valueOf(K), "-alpha", String.valueOf(alpha), "-beta", String.valueOf(beta), "-seed", "1");
+        return corpus.model(option);
+    }
+
+    /**
+     * Sample every token of every document once
+     */
+    public static void sweep(GibbsSampler sampler, Model model){
+        for (int m = 0; m < model.M; m++){
+            int offset = model.data.offsets[m];
+            for (int n = 0; n < model.data.length(m); n++){
+                model.z[offset + n] = sampler.sampling(m, n);
+            }
+        }
+    }
+
+    /**
+     * The counts are the ones of the topic assignments
+     */
+    public static void assertConsistentCounts(Model model){
+        int[][] nw = new int[model.V][model.K];
+        int[][] nd = new int[model.M][model.K];
+        int[] nwsum = new int[model.K];
+        for (int m = 0; m < model.M; m++){
+            for (int i = model.data.offsets[m]; i < model.data.offsets[m + 1]; i++){
+                int k = model.z[i];
+                nw[model.data.tokens[i]][k]++;
+                nd[m][k]++;
+                nwsum[k]++;
+            }
+            Assert.assertEquals("ndsum of document " + m, model.data.length(m), model.ndsum[m]);
+        }
+
+        Assert.assertArrayEquals(nwsum, model.nwsum);
+        for (int w = 0; w < model.V; w++){
+            for (int k = 0; k < model.K; k++){
+                Assert.assertEquals("nw of word " + w + ", topic " + k, nw[w][k], model.nw.get(w, k));
+            }
+        }
+        for (int m = 0; m < model.M; m++){
+            for (int k = 0; k < model.K; k++){
+                Assert.assertEquals("nd of document " + m + ", topic " + k, nd[m][k], model.nd.get(m, k));
+            }
+        }
+    }
+
+    /**
+     * p(z_i = k | z_-i, w) of a token given the other assignments
+     */
+    public static double[] conditional(Model model, int m, int n){
+        int i = model.data.offsets[m] + n;
+        int w = model.data.tokens[i];
+        int current = model.z[i];
+
+        double[] p = new double[model.K];
+        double sum = 0.0;
+        for (int k = 0; k < model.K; k++){
+            int own = (k == current)? 1 : 0;
+            p[k] = (model.nd.get(m, k) - own + model.alpha) * (model.nw.get(w, k) - own + model.beta)
+                    / (model.nwsum[k] - own + model.V * model.beta);
+            sum += p[k];
+        }
+        for (int k = 0; k < model.K; k++){
+            p[k] /= sum;
+        }
+        return p;
+    }
+
+    /**
+     * Resample a token over and over with the other assignments fixed: the topics drawn follow its conditional
+     * distribution, the stationary one of any valid sampler
+     */
+    public static void assertSamplesConditional(GibbsSampler sampler, Model model, int m, int n, int draws){
+        double[] expected = conditional(model, m, n);
+        int i = model.data.offsets[m] + n;
+
+        for (int draw = 0; draw < 1000; draw++){
+            model.z[i] = sampler.sampling(m, n);
+        }
+        double[] frequency = new double[model.K];
+        for (int draw = 0; draw < draws; draw++){
+            model.z[i] = sampler.sampling(m, n);
+            frequency[model.z[i]] += 1.0 / draws;
+        }
+
+        double distance = 0.0;
+        for (int k = 0; k < model.K; k++){
+            distance += Math.abs(frequency[k] - expected[k]) / 2;
+        }
+        Assert.assertTrue("total variation distance " + distance + " of document " + m + ", word " + n, distance < MAX_DISTANCE);
+    }
+
+    /**
+     * Resample two tokens of different documents in turn, so the sampler moves to another document at every draw: the
+     * topics drawn follow their joint conditional distribution given the other assignments
+     */
+    public static void assertSamplesJointConditional(GibbsSampler sampler, Model model, int m1, int n1, int m2, int n2, int draws){
+        Assert.assertNotEquals(m1, m2);
+        int i1 = model.data.offsets[m1] + n1;
+        int i2 = model.data.offsets[m2] + n2;
+        int w1 = model.data.tokens[i1];
+        int w2 = model.data.tokens[i2];
+        int K = model.K;
+        double Vbeta = model.V * model.beta;
+
+        // counts without both tokens
+        double[] nd1 = new double[K], nd2 = new double[K], nw1 = new double[K], nw2 = new double[K], nwsum = new double[K];
+        for (int k = 0; k < K; k++){
+            int own1 = (model.z[i1] == k)? 1 : 0;
+            int own2 = (model.z[i2] == k)? 1 : 0;
+            nd1[k]      = model.nd.get(m1, k) - own1;
+            nd2[k]      = model.nd.get(m2, k) - own2;
+            nw1[k]      = model.nw.get(w1, k) - own1 - ((w1 == w2)? own2 : 0);
+            nw2[k]      = model.nw.get(w2, k) - own2 - ((w1 == w2)? own1 : 0);
+            nwsum[k]    = model.nwsum[k] - own1 - own2;
+        }
+
+        double[] expected1 = new double[K];
+        double[] expected2 = new double[K];
+        double sum = 0.0;
+        for (int a = 0; a < K; a++){
+            double first = (nd1[a] + model.alpha) * (nw1[a] + model.beta) / (nwsum[a] + Vbeta);
+            for (int b = 0; b < K; b++){
+                int same = (a == b)? 1 : 0;
+                double p = first * (nd2[b] + model.alpha) * (nw2[b] + ((w1 == w2)? same : 0) + model.beta) / (nwsum[b] + same + Vbeta);
+                expected1[a] += p;
+                expected2[b] += p;
+                sum += p;
+            }
+        }
+
+        for (int draw = 0; draw < 1000; draw++){
+            model.z[i1] = sampler.sampling(m1, n1);
+            model.z[i2] = sampler.sampling(m2, n2);
+        }
+        double[] frequency1 = new double[K];
+        double[] frequency2 = new double[K];
+        for (int draw = 0; draw < draws; draw++){
+            model.z[i1] = sampler.sampling(m1, n1);
+            model.z[i2] = sampler.sampling(m2, n2);
+            frequency1[model.z[i1]] += 1.0 / draws;
+            frequency2[model.z[i2]] += 1.0 / draws;
+        }
+
+        double distance1 = 0.0;
+        double distance2 = 0.0;
+        for (int k = 0; k < K; k++){
+            distance1 += Math.abs(frequency1[k] - expected1[k] / sum) / 2;
+            distance2 += Math.abs(frequency2[k] - expected2[k] / sum) / 2;
+        }
+        Assert.assertTrue("total variation distance " + distance1 + " of document " + m1 + ", word " + n1, distance1 < MAX_DISTANCE);
+        Assert.assertTrue("total variation distance " + distance2 + " of document " + m2 + ", word " + n2, distance2 < MAX_DISTANCE);
+    }
+
+    /**
+     * How well the topics of a corpus are recovered by an estimation
+     */
+    public static SyntheticCorpus.Recovery recovery(SyntheticCorpus corpus, File dir, String... args) throws CmdLineException, IOException {
+        List<String> all = new ArrayList<String>(Arrays.asList("-est", "-dir", dir.getAbsolutePath(), "-model", "model",
+                "-ntopics", String.valueOf(corpus.numTopics), "-alpha", "0.1", "-beta", "0.01", "-seed", "1"));
+        all.addAll(Arrays.asList(args));
+
+        LDACmdOption option = options(all.toArray(new String[all.size()]));
+        Estimator estimator = new Estimator(option, corpus.model(option));
+        estimator.estimate();
+        return corpus.recovery(estimator.getTrnModel());
+    }
+
+    /**
+     * Recovery about as good as the one of the dense sampler
+     */
+    public static void assertRecoveredAsDense(SyntheticCorpus.Recovery dense, SyntheticCorpus.Recovery recovery){
+        Assert.assertEquals(recovery.toString(), dense.recovered(0.5), recovery.recovered(0.5));
+        Assert.assertTrue(recovery + " vs " + dense, recovery.meanDistance() <= dense.meanDistance() + 0.05);
+    }
+}
@@ -0,0 +1,46 @@
+package org.librairy.client.topics;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SparseGibbsSamplerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void samplesTheConditional() throws Exception {
+        // large alpha and beta, so the smoothing and document buckets hold a fair share of the mass
+        SyntheticCorpus corpus = new SyntheticCorpus(100, 200, 8, 30, 4);
+        Model model = SamplerChecks.model(corpus, folder.getRoot(), 8, 0.5, 0.1);
+
+        SparseGibbsSampler sampler = new SparseGibbsSampler(model);
+        for (int iter = 0; iter < 5; iter++){
+            SamplerChecks.sweep(sampler, model);
+        }
+        SamplerChecks.assertConsistentCounts(model);
+
+        // the cached buckets stay right through the sweeps
+        for (int m : new int[]{3, 50, 7, 99, 0}){
+            SamplerChecks.assertSamplesConditional(sampler, model, m, m % 30, 200000);
+            SamplerChecks.sweep(sampler, model);
+        }
+        SamplerChecks.assertConsistentCounts(model);
+
+        // the cached terms of the document switched from are restored
+        for (int m = 0; m < 90; m += 9){
+            SamplerChecks.assertSamplesJointConditional(sampler, model, m, 0, m + 5, 1, 100000);
+        }
+        SamplerChecks.assertConsistentCounts(model);
+    }
+
+    @Test
+    public void topicsRecoveredAsDense() throws Exception {
+        SyntheticCorpus corpus = new SyntheticCorpus(500, 500, 5, 80, 3);
+
+        SyntheticCorpus.Recovery dense = SamplerChecks.recovery(corpus, folder.getRoot(), "-niters", "150");
+        SyntheticCorpus.Recovery sparse = SamplerChecks.recovery(corpus, folder.getRoot(), "-niters", "150", "-sampler", GibbsSampler.SPARSE);
+        SamplerChecks.assertRecoveredAsDense(dense, sparse);
+    }
+}
@@ -0,0 +1,448 @@
+package org.librairy.client.topics;
+
+import gnu.trove.list.array.TIntArrayList;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+import org.librairy.client.services.FileService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Documents sampled from the LDA generative process, with known topics.
+ *
+ * Every topic is a distribution over the words drawn from Dirichlet(beta), every document a distribution over the
+ * topics drawn from Dirichlet(alpha), and every token a topic of its document and then a word of that topic. Word w is
+ * written as "w" followed by its id. The same seed always gives the same topics and documents, whether they are
+ * written to a dataset file, built into a dataset in memory or returned as texts.
+ *
+ * The topics are kept as cumulative distributions of floats, i.e. 4 * K * V bytes, and each token costs a binary
+ * search over the vocabulary, so millions of documents over a vocabulary of millions of words are feasible.
+ */
+public class SyntheticCorpus {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SyntheticCorpus.class);
+
+    public static final String FIXED    = "fixed";
+    public static final String POISSON  = "poisson";
+    public static final String UNIFORM  = "uniform";
+
+    // documents sampled together
+    private static final int BLOCK_SIZE = 4096;
+
+    @Option(name="-ndocs", usage="Specify the number of documents")
+        public int numDocuments = 1000;
+
+    @Option(name="-nwords", usage="Specify the size of the vocabulary")
+        public int numWords = 10000;
+
+    @Option(name="-ntopics", usage="Specify the number of topics")
+        public int numTopics = 10;
+
+    @Option(name="-length", usage="Specify the mean number of words of a document")
+        public int length = 100;
+
+    @Option(name="-lengthdist", usage="Specify the distribution of the document lengths: fixed (default), poisson or uniform (from 1 to twice the mean)")
+        public String lengthDistribution = FIXED;
+
+    @Option(name="-alpha", usage="Specify the concentration of the topic distribution of the documents")
+        public double alpha = 0.1;
+
+    @Option(name="-beta", usage="Specify the concentration of the word distribution of the topics")
+        public double beta = 0.01;
+
+    @Option(name="-seed", usage="Specify the seed of the random number generator")
+        public long seed = 1;
+
+    @Option(name="-output", usage="Specify the dataset file to write (*.gz)")
+        public String output = "synthetic.gz";
+
+    // cumulative word distribution of each topic, sampled on first use
+    private float[][] topics = null;
+
+    private interface DocumentConsumer {
+        void accept(int[] words) throws IOException;
+    }
+
+    public SyntheticCorpus(){
+    }
+
+    public SyntheticCorpus(int numDocuments, int numWords, int numTopics, int length, long seed){
+        this.numDocuments   = numDocuments;
+        this.numWords       = numWords;
+        this.numTopics      = numTopics;
+        this.length         = length;
+        this.seed           = seed;
+    }
+
+    public static String word(int w){
+        return "w" + w;
+    }
+
+    //---------------------------------------------------------------
+    // Outputs
+    //---------------------------------------------------------------
+
+    /**
+     * Write the documents in the dataset format, one per line
+     */
+    public void write(File file) throws IOException {
+        long start = System.currentTimeMillis();
+        BufferedWriter writer = FileService.writer(file.getAbsolutePath());
+        try {
+            StringBuilder line = new StringBuilder();
+            generate(words -> {
+                line.setLength(0);
+                for (int n = 0; n < words.length; n++){
+                    if (n > 0) line.append(' ');
+                    line.append('w').append(words[n]);
+                }
+                writer.write(line.append('\n').toString());
+            });
+        } finally {
+            writer.close();
+        }
+        LOG.info("Synthetic corpus of " + numDocuments + " documents written to " + file + " in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Documents as texts in the dataset format
+     */
+    public List<String> texts(){
+        List<String> texts = new ArrayList<>(numDocuments);
+        try {
+            generate(words -> {
+                StringBuilder text = new StringBuilder();
+                for (int n = 0; n < words.length; n++){
+                    if (n > 0) text.append(' ');
+                    text.append('w').append(words[n]);
+                }
+                texts.add(text.toString());
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return texts;
+    }
+
+    /**
+     * Documents in a dataset, as read from the written file
+     */
+    public LDADataset dataset(){
+        LDADataset data = new LDADataset();
+        TIntArrayList ids = new TIntArrayList();
+        try {
+            generate(words -> {
+                ids.resetQuick();
+                for (int n = 0; n < words.length; n++){
+                    ids.add(data.localDict.addWord(word(words[n])));
+                }
+                data.addDoc(ids, null, null);
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        data.V = data.localDict.size();
+        data.trim();
+        return data;
+    }
+
+    /**
+     * Model to estimate with the documents in memory, initialized with random topics
+     */
+    public Model model(LDACmdOption option) throws IOException {
+        Model model = new Model(option, null, false);
+        model.data = dataset();
+        model.init(true);
+        return model;
+    }
+
+    //---------------------------------------------------------------
+    // Generative process
+    //---------------------------------------------------------------
+
+    private synchronized float[][] topics(){
+        if (topics != null) return topics;
+
+        // independent of the documents, whatever their number
+        SplittableRandom random = new SplittableRandom(seed).split();
+        SplittableRandom[] randoms = new SplittableRandom[numTopics];
+        for (int k = 0; k < numTopics; k++){
+            randoms[k] = random.split();
+        }
+
+        float[][] sampled = new float[numTopics][];
+        IntStream.range(0, numTopics).parallel().forEach(k -> {
+            double[] phi = dirichlet(beta, numWords, randoms[k]);
+            float[] cumulative = new float[numWords];
+            double sum = 0.0;
+            for (int w = 0; w < numWords; w++){
+                sum += phi[w];
+                cumulative[w] = (float) sum;
+            }
+            sampled[k] = cumulative;
+        });
+        topics = sampled;
+        return topics;
+    }
+
+    private void generate(DocumentConsumer consumer) throws IOException {
+        float[][] topics = topics();
+
+        // the first split samples the topics, then every document has its own generator so blocks of documents are
+        // sampled in parallel and handed over in order
+        SplittableRandom random = new SplittableRandom(seed);
+        random.split();
+        SplittableRandom[] randoms = new SplittableRandom[BLOCK_SIZE];
+        int[][] block = new int[BLOCK_SIZE][];
+        for (int first = 0; first < numDocuments; first += BLOCK_SIZE){
+            int size = Math.min(BLOCK_SIZE, numDocuments - first);
+            for (int d = 0; d < size; d++){
+                randoms[d] = random.split();
+            }
+            IntStream.range(0, size).parallel().forEach(d -> block[d] = document(topics, randoms[d]));
+            for (int d = 0; d < size; d++){
+                consumer.accept(block[d]);
+            }
+        }
+    }
+
+    private int[] document(float[][] topics, SplittableRandom random){
+        double[] cumulative = dirichlet(alpha, numTopics, random);
+        for (int k = 1; k < numTopics; k++){
+            cumulative[k] += cumulative[k - 1];
+        }
+
+        int[] words = new int[length(random)];
+        for (int n = 0; n < words.length; n++){
+            float[] topic = topics[search(cumulative, random.nextDouble() * cumulative[numTopics - 1])];
+            words[n] = search(topic, random.nextDouble() * topic[numWords - 1]);
+        }
+        return words;
+    }
+
+    private int length(SplittableRandom random){
+        if (POISSON.equalsIgnoreCase(lengthDistribution)) return Math.max(1, poisson(length, random));
+        if (UNIFORM.equalsIgnoreCase(lengthDistribution)) return 1 + random.nextInt(Math.max(1, 2 * length - 1));
+        return Math.max(1, length);
+    }
+
+    /**
+     * First index with a cumulative value greater than u
+     */
+    private static int search(double[] cumulative, double u){
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high){
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] > u) high = middle;
+            else low = middle + 1;
+        }
+        return low;
+    }
+
+    private static int search(float[] cumulative, double u){
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high){
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] > u) high = middle;
+            else low = middle + 1;
+        }
+        return low;
+    }
+
+    /**
+     * Symmetric Dirichlet sample, through the logarithms of gamma samples so tiny concentrations do not underflow
+     */
+    private static double[] dirichlet(double concentration, int size, SplittableRandom random){
+        double[] sample = new double[size];
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++){
+            sample[i] = logGamma(concentration, random);
+            max = Math.max(max, sample[i]);
+        }
+
+        double sum = 0.0;
+        for (int i = 0; i < size; i++){
+            sample[i] = Math.exp(sample[i] - max);
+            sum += sample[i];
+        }
+        for (int i = 0; i < size; i++){
+            sample[i] /= sum;
+        }
+        return sample;
+    }
+
+    /**
+     * Logarithm of a Gamma(shape, 1) sample (Marsaglia and Tsang, boosted for shapes below 1)
+     */
+    private static double logGamma(double shape, SplittableRandom random){
+        if (shape < 1.0){
+            return logGamma(shape + 1.0, random) + Math.log(1.0 - random.nextDouble()) / shape;
+        }
+
+        double d = shape - 1.0 / 3.0;
+        double c = 1.0 / Math.sqrt(9.0 * d);
+        while (true){
+            double x = gaussian(random);
+            double v = 1.0 + c * x;
+            if (v <= 0.0) continue;
+            v = v * v * v;
+            double u = 1.0 - random.nextDouble();
+            if (Math.log(u) < 0.5 * x * x + d - d * v + d * Math.log(v)) return Math.log(d * v);
+        }
+    }
+
+    private static double gaussian(SplittableRandom random){
+        // polar method
+        while (true){
+            double u = 2.0 * random.nextDouble() - 1.0;
+            double v = 2.0 * random.nextDouble() - 1.0;
+            double s = u * u + v * v;
+            if (s > 0.0 && s < 1.0) return u * Math.sqrt(-2.0 * Math.log(s) / s);
+        }
+    }
+
+    private static int poisson(double mean, SplittableRandom random){
+        if (mean > 30.0){
+            // normal approximation
+            return (int) Math.round(mean + Math.sqrt(mean) * gaussian(random));
+        }
+        double limit = Math.exp(-mean);
+        int count = 0;
+        double product = random.nextDouble();
+        while (product > limit){
+            product *= random.nextDouble();
+            count++;
+        }
+        return count;
+    }
+
+    //---------------------------------------------------------------
+    // Topic recovery
+    //---------------------------------------------------------------
+
+    /**
+     * Matching of the topics of the corpus with the topics of a model estimated on it
+     */
+    public static class Recovery {
+
+        // topic of the model matched with each topic of the corpus, -1 if none
+        public final int[] match;
+        // Hellinger distance between each topic of the corpus and its match, 1 if none
+        public final double[] distance;
+
+        Recovery(int[] match, double[] distance){
+            this.match      = match;
+            this.distance   = distance;
+        }
+
+        public double meanDistance(){
+            return Arrays.stream(distance).average().orElse(0.0);
+        }
+
+        /**
+         * Number of topics of the corpus matched within a distance
+         */
+        public int recovered(double maxDistance){
+            return (int) Arrays.stream(distance).filter(d -> d <= maxDistance).count();
+        }
+
+        @Override
+        public String toString(){
+            return "Topics recovered: " + recovered(0.5) + "/" + distance.length + " within a Hellinger distance of 0.5, "
+                    + "mean distance " + meanDistance();
+        }
+    }
+
+    /**
+     * How well a model estimated on these documents recovers their topics. Every topic of the corpus is matched with a
+     * different topic of the model, greedily by increasing Hellinger distance between their word distributions.
+     */
+    public Recovery recovery(Model model){
+        float[][] topics = topics();
+
+        // word of the corpus of each word of the model
+        int[] ids = new int[model.V];
+        for (int w = 0; w < model.V; w++){
+            ids[w] = Integer.parseInt(model.data.localDict.getWord(w).substring(1));
+        }
+
+        float[][] learned = new float[model.K][];
+        IntStream.range(0, model.K).parallel().forEach(j -> {
+            double[] phi = model.getPhi(j);
+            learned[j] = new float[phi.length];
+            for (int w = 0; w < phi.length; w++){
+                learned[j][w] = (float) Math.sqrt(phi[w]);
+            }
+        });
+
+        // Bhattacharyya coefficients
+        double[][] coefficients = new double[numTopics][model.K];
+        IntStream.range(0, numTopics).parallel().forEach(k -> {
+            float[] cumulative = topics[k];
+            double total = cumulative[numWords - 1];
+            double[] root = new double[model.V];
+            for (int w = 0; w < model.V; w++){
+                int id = ids[w];
+                root[w] = Math.sqrt(Math.max(0.0, cumulative[id] - ((id > 0)? cumulative[id - 1] : 0.0)) / total);
+            }
+            for (int j = 0; j < model.K; j++){
+                double coefficient = 0.0;
+                for (int w = 0; w < model.V; w++){
+                    coefficient += root[w] * learned[j][w];
+                }
+                coefficients[k][j] = coefficient;
+            }
+        });
+
+        // pairs by decreasing coefficient
+        Integer[] pairs = new Integer[numTopics * model.K];
+        for (int i = 0; i < pairs.length; i++){
+            pairs[i] = i;
+        }
+        Arrays.sort(pairs, (a, b) -> Double.compare(coefficients[b / model.K][b % model.K], coefficients[a / model.K][a % model.K]));
+
+        int[] match = new int[numTopics];
+        double[] distance = new double[numTopics];
+        Arrays.fill(match, -1);
+        Arrays.fill(distance, 1.0);
+        boolean[] used = new boolean[model.K];
+        for (int pair : pairs){
+            int k = pair / model.K;
+            int j = pair % model.K;
+            if (match[k] >= 0 || used[j]) continue;
+            match[k] = j;
+            used[j] = true;
+            distance[k] = Math.sqrt(Math.max(0.0, 1.0 - coefficients[k][j]));
+        }
+        return new Recovery(match, distance);
+    }
+
+    /**
+     * Write a synthetic dataset file
+     */
+    public static void main(String args[]) throws IOException {
+        SyntheticCorpus corpus = new SyntheticCorpus();
+        CmdLineParser parser = new CmdLineParser(corpus);
+        try {
+            parser.parseArgument(args);
+        } catch (CmdLineException e) {
+            System.out.println(e.getMessage());
+            parser.printUsage(System.out);
+            return;
+        }
+        corpus.write(new File(corpus.output));
+    }
+}
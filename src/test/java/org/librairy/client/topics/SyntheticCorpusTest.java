@@ -0,0 +1,68 @@
+package org.librairy.client.topics;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+public class SyntheticCorpusTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SyntheticCorpusTest.class);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LDACmdOption options(String... args) throws CmdLineException {
+        LDACmdOption option = new LDACmdOption();
+        new CmdLineParser(option).parseArgument(args);
+        return option;
+    }
+
+    @Test
+    public void writtenAsBuiltInMemory() throws IOException {
+        SyntheticCorpus corpus = new SyntheticCorpus(200, 1000, 5, 50, 7);
+        corpus.lengthDistribution = SyntheticCorpus.POISSON;
+
+        File file = new File(folder.getRoot(), "synthetic.gz");
+        corpus.write(file);
+        LDADataset read = new LDADataset();
+        read.readDataSet(file.getAbsolutePath(), true);
+
+        LDADataset built = corpus.dataset();
+        Assert.assertEquals(200, read.M);
+        Assert.assertEquals(built.M, read.M);
+        Assert.assertEquals(built.V, read.V);
+        Assert.assertArrayEquals(built.offsets, read.offsets);
+        Assert.assertArrayEquals(built.tokens, read.tokens);
+        Assert.assertEquals(corpus.texts().get(10), String.join(" ", words(read, 10)));
+    }
+
+    private static String[] words(LDADataset data, int m){
+        String[] words = new String[data.length(m)];
+        for (int n = 0; n < words.length; n++){
+            words[n] = data.localDict.getWord(data.tokens[data.offsets[m] + n]);
+        }
+        return words;
+    }
+
+    @Test
+    public void topicsRecovered() throws Exception {
+        SyntheticCorpus corpus = new SyntheticCorpus(500, 500, 5, 80, 3);
+
+        LDACmdOption option = options("-est", "-dir", folder.getRoot().getAbsolutePath(), "-model", "model",
+                "-ntopics", "5", "-alpha", "0.1", "-beta", "0.01", "-niters", "200", "-seed", "1");
+        Estimator estimator = new Estimator(option, corpus.model(option));
+        estimator.estimate();
+
+        SyntheticCorpus.Recovery recovery = corpus.recovery(estimator.getTrnModel());
+        LOG.info(recovery.toString());
+        Assert.assertEquals(5, recovery.recovered(0.5));
+    }
+}
@@ -0,0 +1,65 @@
+package org.librairy.client.topics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class TopKSelectorTest {
+
+    /**
+     * Top k indices as selected before, by a stable sort of all the Pairs of a row in descending order
+     */
+    private static int[] sorted(double[] row, int k){
+        List<Pair> pairs = new ArrayList<Pair>();
+        for (int i = 0; i < row.length; i++){
+            pairs.add(new Pair(i, row[i], false));
+        }
+        Collections.sort(pairs);
+
+        int[] selection = new int[Math.max(0, Math.min(k, row.length))];
+        for (int i = 0; i < selection.length; i++){
+            selection[i] = (Integer) pairs.get(i).first;
+        }
+        return selection;
+    }
+
+    @Test
+    public void sameAsStableSort(){
+        Random random = new Random(42);
+        for (int test = 0; test < 2000; test++){
+            int length = random.nextInt(200);
+            // few distinct values, so there are many ties
+            int distinct = 1 + random.nextInt(10);
+            double[] row = new double[length];
+            for (int i = 0; i < length; i++){
+                row[i] = random.nextInt(distinct) / (double) distinct;
+            }
+            if (length > 0 && random.nextBoolean()) row[random.nextInt(length)] = -0.0;
+
+            for (int k : new int[]{0, 1, 2, 5, 20, length - 1, length, length + 3}){
+                Assert.assertArrayEquals("length " + length + ", k " + k, sorted(row, k), TopKSelector.select(row, k));
+            }
+        }
+    }
+
+    @Test
+    public void rowsSelectedInParallel(){
+        Random random = new Random(7);
+        double[][] rows = new double[50][1000];
+        for (double[] row : rows){
+            for (int i = 0; i < row.length; i++){
+                row[i] = random.nextDouble();
+            }
+        }
+
+        int[][] selection = TopKSelector.select(rows, 10);
+        Assert.assertEquals(rows.length, selection.length);
+        for (int i = 0; i < rows.length; i++){
+            Assert.assertArrayEquals(sorted(rows[i], 10), selection[i]);
+        }
+    }
+}
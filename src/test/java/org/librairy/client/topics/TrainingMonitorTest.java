@@ -0,0 +1,51 @@
+package org.librairy.client.topics;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.args4j.CmdLineParser;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TrainingMonitorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void registeredWhileRunning() throws Exception {
+        SyntheticCorpus corpus = new SyntheticCorpus(50, 200, 4, 20, 3);
+        LDACmdOption option = new LDACmdOption();
+        new CmdLineParser(option).parseArgument("-est", "-dir", folder.getRoot().getAbsolutePath(), "-model", "model",
+                "-ntopics", "4", "-niters", "5", "-seed", "1");
+        Model model = corpus.model(option);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.librairy.client.topics:type=Training,phase=" + TrainingMetrics.ESTIMATION
+                + ",name=" + ObjectName.quote(model.dir + File.separator + model.modelName));
+
+        List<Long> tokens = new ArrayList<Long>();
+        Estimator estimator = new Estimator(option, model);
+        estimator.addListener(metrics -> {
+            Assert.assertTrue(server.isRegistered(name));
+            try {
+                tokens.add((Long) server.getAttribute(name, "Tokens"));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        estimator.estimate();
+
+        Assert.assertEquals(5, tokens.size());
+        for (long numTokens : tokens){
+            Assert.assertEquals(model.data.numTokens, numTokens);
+        }
+        Assert.assertFalse(server.isRegistered(name));
+    }
+}